@@ -0,0 +1,57 @@
+package com.example.passmanager.benchmark;
+
+import com.example.passmanager.model.PasswordEntry;
+import com.example.passmanager.model.StrengthReport;
+import com.example.passmanager.service.PasswordStrengthService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка надёжности всех паролей хранилища.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class AuditBenchmark {
+
+    private static final String[] PASSWORDS = {"abc", "Password123!", "qwertyuiop", "x7#Lq9!vR2@mZ4$pK8&w"};
+
+    @Param({"1000000"})
+    private int size;
+
+    private final PasswordStrengthService strengthService = new PasswordStrengthService();
+    private List<PasswordEntry> entries;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        entries = new ArrayList<>(size);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < size; i++) {
+            entries.add(new PasswordEntry(Integer.toString(i), "service" + i, "user" + i,
+                    PASSWORDS[i % PASSWORDS.length] + i, "", now));
+        }
+    }
+
+    @Benchmark
+    public StrengthReport audit() {
+        return strengthService.audit(entries, 100);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.passmanager.benchmark;
+
+import com.example.passmanager.model.PasswordEntry;
+import com.example.passmanager.service.BreachedPasswords;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка паролей по базе утечек: одиночный поиск (на каждое нажатие клавиши) и проверка всего хранилища.
+ * База генерируется случайными хешами в формате Have I Been Pwned.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class BreachBenchmark {
+
+    @Param({"10000000"})
+    private long corpusSize;
+
+    @Param({"100000"})
+    private int vaultSize;
+
+    private Path baseDir;
+    private BreachedPasswords breaches;
+    private List<PasswordEntry> entries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        baseDir = BenchmarkFiles.createTempDir("passmanager-breach-bench");
+        Path corpus = baseDir.resolve("pwned-passwords.txt");
+        Random random = new Random(42);
+        HexFormat hex = HexFormat.of().withUpperCase();
+        long step = Long.divideUnsigned(-1L, corpusSize);
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(corpus, StandardCharsets.US_ASCII), 1 << 20)) {
+            for (long i = 0; i < corpusSize; i++) {
+                // Возрастающие случайные хеши, как в файле, упорядоченном по хешу
+                long high = i * step + Long.remainderUnsigned(random.nextLong(), step);
+                out.write(hex.toHexDigits(high));
+                out.write(hex.toHexDigits(random.nextLong()));
+                out.write(hex.toHexDigits(random.nextInt()));
+                out.write(':');
+                out.write(Integer.toString(1 + random.nextInt(1000)));
+                out.write("\r\n");
+            }
+        }
+        breaches = BreachedPasswords.open(corpus);
+
+        entries = new ArrayList<>(vaultSize);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < vaultSize; i++) {
+            entries.add(new PasswordEntry(Integer.toString(i), "service" + i, "user" + i, "P@ssw0rd-" + i, "", now));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        breaches.close();
+        BenchmarkFiles.deleteRecursively(baseDir);
+    }
+
+    @Benchmark
+    public long count() {
+        return breaches.count("P@ssw0rd-" + (next++ & 0xFFFF));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public Map<String, Long> scan() {
+        return breaches.scan(entries);
+    }
+}
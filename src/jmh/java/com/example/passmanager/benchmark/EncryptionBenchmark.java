@@ -0,0 +1,86 @@
+package com.example.passmanager.benchmark;
+
+import com.example.passmanager.service.EncryptionService;
+import com.example.passmanager.service.PlaintextCache;
+import com.example.passmanager.service.VaultKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Шифрование и расшифровка одного пароля, повторное открытие пароля из кэша, разблокировка ключа хранилища
+ * мастер-паролем.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncryptionBenchmark {
+
+    private static final String PASSWORD = "c0rrect-h0rse-Battery-staple!";
+    private static final char[] MASTER_PASSWORD = "master-password".toCharArray();
+
+    private Path baseDir;
+    private EncryptionService encryptionService;
+    private String encrypted;
+    private final PlaintextCache plaintextCache = new PlaintextCache(256, Duration.ZERO);
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        baseDir = BenchmarkFiles.createTempDir("passmanager-bench");
+        VaultKey vaultKey = VaultKey.create(baseDir, MASTER_PASSWORD, VaultKey.MIN_ITERATIONS).orElseThrow();
+        encryptionService = new EncryptionService(vaultKey);
+        encrypted = encryptionService.encrypt(PASSWORD);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFiles.deleteRecursively(baseDir);
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return encryptionService.encrypt(PASSWORD);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return encryptionService.decrypt(encrypted);
+    }
+
+    /**
+     * Повторное открытие того же пароля: попадание в кэш вместо расшифровки.
+     */
+    @Benchmark
+    public String revealCached() {
+        return plaintextCache.get(encrypted, encryptionService::decrypt);
+    }
+
+    /**
+     * Разблокировка: один вывод ключа PBKDF2 с {@value VaultKey#MIN_ITERATIONS} итерациями.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public Optional<VaultKey> unlock() {
+        return VaultKey.unlock(baseDir, MASTER_PASSWORD);
+    }
+}
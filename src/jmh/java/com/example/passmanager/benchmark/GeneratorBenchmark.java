@@ -0,0 +1,48 @@
+package com.example.passmanager.benchmark;
+
+import com.example.passmanager.service.PasswordGenerator;
+import com.example.passmanager.service.PasswordPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Генерация одного пароля заданной длины и партии паролей по политике.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeneratorBenchmark {
+
+    @Param({"12", "32"})
+    private int length;
+
+    @Benchmark
+    public String generate() {
+        return PasswordGenerator.generate(length);
+    }
+
+    /**
+     * Миллион паролей со всеми классами символов и без похожих символов.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public List<String> generateBatch() {
+        return PasswordGenerator.generate(PasswordPolicy.characters(length).withExcludeAmbiguous(true), 1_000_000);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.passmanager.benchmark;
+
+import com.example.passmanager.model.PasswordEntry;
+import com.example.passmanager.service.PasswordRepository;
+import com.example.passmanager.service.VaultFormat;
+import com.example.passmanager.service.VaultKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Загрузка и сохранение хранилища разного размера в формате JSON и в двоичном формате.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class RepositoryBenchmark {
+
+    private static final char[] MASTER_PASSWORD = "master-password".toCharArray();
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    @Param({"JSON", "BINARY"})
+    private VaultFormat format;
+
+    private Path baseDir;
+    private PasswordRepository repository;
+    private List<PasswordEntry> plainEntries;
+    private List<PasswordEntry> loadedEntries;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        baseDir = BenchmarkFiles.createTempDir("passmanager-bench");
+        // Стоимость вывода ключа из пароля здесь не измеряется, поэтому одна итерация PBKDF2
+        VaultKey vaultKey = VaultKey.create(baseDir, MASTER_PASSWORD, 1).orElseThrow();
+        repository = new PasswordRepository(baseDir, format, vaultKey);
+        repository.setWriteBehind(Duration.ZERO, Duration.ZERO);
+
+        plainEntries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            plainEntries.add(repository.create("service-" + i + ".example.com", "user" + i + "@example.com",
+                    "P@ssw0rd-" + i, i % 10 == 0 ? "заметка " + i : ""));
+        }
+        repository.save(plainEntries);
+        repository.flush();
+        loadedEntries = repository.load();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        repository.close();
+        BenchmarkFiles.deleteRecursively(baseDir);
+    }
+
+    @Benchmark
+    public List<PasswordEntry> load() {
+        return repository.load();
+    }
+
+    /**
+     * Сохранение загруженного хранилища: пароли не менялись, шифротекст переиспользуется.
+     */
+    @Benchmark
+    public void saveLoaded() {
+        repository.save(loadedEntries);
+        repository.flush();
+    }
+
+    /**
+     * Сохранение записей с открытыми паролями: каждый пароль шифруется заново.
+     */
+    @Benchmark
+    public void saveNew() {
+        repository.save(plainEntries);
+        repository.flush();
+    }
+
+    /**
+     * Смена ключа хранилища: перешифровываются только ключи записей, пароли не расшифровываются.
+     */
+    @Benchmark
+    public boolean rotateKey() {
+        return repository.rotateKey();
+    }
+}
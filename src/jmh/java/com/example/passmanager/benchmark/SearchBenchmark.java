@@ -0,0 +1,60 @@
+package com.example.passmanager.benchmark;
+
+import com.example.passmanager.model.PasswordEntry;
+import com.example.passmanager.model.SearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск по индексу — вызывается на каждое нажатие клавиши в поле поиска.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class SearchBenchmark {
+
+    private static final String[] SERVICES = {"google", "github", "mail", "bank", "shop", "cloud", "почта"};
+
+    @Param({"1000000"})
+    private int size;
+
+    @Param({"github-123456", "user4242@", "почта"})
+    private String query;
+
+    private SearchIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<PasswordEntry> entries = new ArrayList<>(size);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < size; i++) {
+            entries.add(new PasswordEntry(Integer.toHexString(i), SERVICES[i % SERVICES.length] + "-" + i + ".com",
+                    "user" + (i * 7919 % 100_000) + "@example.com", "secret", i % 10 == 0 ? "заметка " + i : "",
+                    now));
+        }
+        index = new SearchIndex(entries);
+    }
+
+    @Benchmark
+    public List<PasswordEntry> search() {
+        return index.search(query);
+    }
+}
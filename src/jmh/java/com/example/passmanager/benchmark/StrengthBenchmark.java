@@ -0,0 +1,38 @@
+package com.example.passmanager.benchmark;
+
+import com.example.passmanager.model.PasswordStrength;
+import com.example.passmanager.service.PasswordStrengthService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Оценка надёжности пароля — вызывается на каждое нажатие клавиши.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StrengthBenchmark {
+
+    @Param({"abc", "Password123!", "qwertyuiop", "x7#Lq9!vR2@mZ4$pK8&w"})
+    private String password;
+
+    private final PasswordStrengthService strengthService = new PasswordStrengthService();
+
+    @Benchmark
+    public PasswordStrength evaluate() {
+        return strengthService.evaluate(password);
+    }
+}
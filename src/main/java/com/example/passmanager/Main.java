@@ -1,7 +1,10 @@
 package com.example.passmanager;
 
+import com.example.passmanager.cli.PasswordManagerCli;
+
 /**
- * Класс-обёртка для запуска JavaFX приложения.
+ * Точка входа: с командой в первом аргументе запускается командная строка ({@link PasswordManagerCli}),
+ * иначе — JavaFX приложение. Классы JavaFX в режиме командной строки не загружаются.
  */
 public final class Main {
 
@@ -9,6 +12,9 @@ public final class Main {
     }
 
     public static void main(String[] args) {
+        if (args.length > 0 && PasswordManagerCli.isCommand(args[0])) {
+            System.exit(PasswordManagerCli.run(args, System.in, System.out, System.err));
+        }
         PasswordManagerApplication.launchApp(args);
     }
 }
@@ -1,27 +1,132 @@
 package com.example.passmanager;
 
 import com.example.passmanager.controller.PasswordManagerController;
+import com.example.passmanager.service.BreachedPasswords;
 import com.example.passmanager.service.PasswordRepository;
 import com.example.passmanager.service.PasswordStrengthService;
+import com.example.passmanager.service.VaultFormat;
+import com.example.passmanager.service.VaultKey;
+import com.example.passmanager.view.MasterPasswordDialog;
 import com.example.passmanager.view.PasswordManagerView;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Optional;
+
 /**
  * JavaFX приложение менеджера паролей.
  */
 public class PasswordManagerApplication extends Application {
 
+    private PasswordRepository repository;
+    private BreachedPasswords breaches;
+
     public static void launchApp(String[] args) {
         launch(args);
     }
 
     @Override
     public void start(Stage primaryStage) {
+        Path baseDir = PasswordRepository.defaultDirectory();
+        Optional<VaultKey> vaultKey = unlock(baseDir);
+        if (vaultKey.isEmpty()) {
+            Platform.exit();
+            return;
+        }
         PasswordManagerView view = new PasswordManagerView(primaryStage);
-        PasswordRepository repository = new PasswordRepository();
+        repository = new PasswordRepository(baseDir, vaultFormat(), vaultKey.get());
         PasswordStrengthService strengthService = new PasswordStrengthService();
-        new PasswordManagerController(repository, strengthService, view);
+        breaches = openBreaches();
+        new PasswordManagerController(repository, strengthService, breaches, view);
+    }
+
+    /**
+     * Открывает ключ хранилища мастер-паролем, пока пароль не окажется верным или пользователь не откажется.
+     * Для нового хранилища и для ключа прежней версии без пароля пароль задаётся, а число итераций подбирается
+     * под время разблокировки из параметра {@code --unlock-time=<мс>}.
+     * Вывод ключа занимает заметное время и идёт в фоновом потоке, пока окно ввода пароля остаётся открытым.
+     */
+    private Optional<VaultKey> unlock(Path baseDir) {
+        VaultKey.Status status = VaultKey.status(baseDir);
+        boolean protect = status != VaultKey.Status.PROTECTED;
+        String message = switch (status) {
+            case MISSING -> "Задайте мастер-пароль нового хранилища";
+            case UNPROTECTED -> "Ключ хранилища хранится без защиты. Задайте мастер-пароль";
+            case PROTECTED -> "Введите мастер-пароль";
+        };
+        if (!protect) {
+            return MasterPasswordDialog.ask(message, false, password -> VaultKey.unlock(baseDir, password),
+                    "Неверный мастер-пароль");
+        }
+        Duration unlockTime = unlockTime();
+        return MasterPasswordDialog.ask(message, true,
+                password -> VaultKey.create(baseDir, password, VaultKey.calibrate(unlockTime)),
+                "Не удалось сохранить ключ хранилища");
+    }
+
+    private Duration unlockTime() {
+        String millis = getParameters().getNamed().get("unlock-time");
+        if (millis == null) {
+            return VaultKey.DEFAULT_UNLOCK_TIME;
+        }
+        try {
+            return Duration.ofMillis(Long.parseLong(millis));
+        } catch (NumberFormatException e) {
+            System.err.println("Неверное время разблокировки: " + millis);
+            return VaultKey.DEFAULT_UNLOCK_TIME;
+        }
+    }
+
+    /**
+     * База утечек из параметра запуска {@code --breaches=<файл>}; без параметра проверка отключена.
+     */
+    private BreachedPasswords openBreaches() {
+        String file = getParameters().getNamed().get("breaches");
+        if (file == null) {
+            return null;
+        }
+        try {
+            return BreachedPasswords.open(Path.of(file));
+        } catch (IOException e) {
+            System.err.println("Не удалось открыть базу утечек " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Формат основного хранилища из параметра запуска {@code --format=json|binary}; по умолчанию JSON.
+     */
+    private VaultFormat vaultFormat() {
+        String format = getParameters().getNamed().get("format");
+        if (format == null) {
+            return VaultFormat.JSON;
+        }
+        try {
+            return VaultFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Неизвестный формат хранилища: " + format + ", используется JSON");
+            return VaultFormat.JSON;
+        }
+    }
+
+    @Override
+    public void stop() {
+        // Записываем отложенные изменения до выхода из приложения
+        if (repository != null) {
+            repository.close();
+        }
+        if (breaches != null) {
+            try {
+                breaches.close();
+            } catch (IOException e) {
+                System.err.println("Не удалось закрыть базу утечек: " + e.getMessage());
+            }
+        }
     }
 }
 
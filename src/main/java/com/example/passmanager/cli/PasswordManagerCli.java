@@ -0,0 +1,610 @@
+package com.example.passmanager.cli;
+
+import com.example.passmanager.model.PasswordEntry;
+import com.example.passmanager.model.PasswordStrength;
+import com.example.passmanager.model.SearchIndex;
+import com.example.passmanager.model.StrengthReport;
+import com.example.passmanager.service.BreachedPasswords;
+import com.example.passmanager.service.MappedVault;
+import com.example.passmanager.service.PasswordGenerator;
+import com.example.passmanager.service.PasswordPolicy;
+import com.example.passmanager.service.PasswordRepository;
+import com.example.passmanager.service.PasswordStrengthService;
+import com.example.passmanager.service.VaultFormat;
+import com.example.passmanager.service.VaultKey;
+
+import java.io.BufferedReader;
+import java.io.Console;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Командная строка менеджера паролей для сценариев: работает с хранилищем без запуска JavaFX.
+ * <p>
+ * Данные читаются из стандартного ввода и пишутся в стандартный вывод построчно, поля разделены табуляцией;
+ * табуляция, перевод строки и обратная косая черта внутри полей экранируются как {@code \t}, {@code \n}
+ * и {@code \\}. Сообщения и ошибки выводятся в поток ошибок.
+ */
+public final class PasswordManagerCli {
+
+    private static final Set<String> COMMANDS =
+            Set.of("get", "add", "delete", "import", "export", "audit", "generate", "passwd", "rotate-key",
+                    "help");
+    private static final int OK = 0;
+    private static final int FAILURE = 1;
+    private static final int USAGE = 2;
+    /**
+     * Пароли генерируются и выводятся частями, чтобы большая партия не держалась в памяти целиком.
+     */
+    private static final int GENERATE_BATCH = 65_536;
+    private static final String STDIO = "-";
+    /**
+     * Переменные окружения с мастер-паролем для сценариев без терминала.
+     */
+    private static final String PASSWORD_VARIABLE = "PASSMANAGER_PASSWORD";
+    private static final String NEW_PASSWORD_VARIABLE = "PASSMANAGER_NEW_PASSWORD";
+
+    private static final String HELP = """
+            Использование: passmanager <команда> [параметры]
+
+            Команды:
+              get <запрос>            записи с данным id или подходящие под запрос: id, сервис, логин, пароль
+                  --password          выводить только пароли
+              add                     добавить записи из ввода: сервис, логин, пароль, заметки; выводит id
+              delete [id…]            удалить записи; без аргументов id читаются из ввода
+              import <файл|->         добавить записи из файла хранилища; записи с известным id пропускаются
+              export <файл|->         записать все записи в файл хранилища
+                  --io-format=json|binary  формат ввода или вывода для «-» (по умолчанию json)
+              audit                   надёжность паролей, повторы и самые слабые записи
+                  --weakest=N         сколько слабейших записей показать (по умолчанию 10)
+                  --breaches=<файл>   проверить пароли по базе утечек
+              generate                сгенерировать пароли
+                  --count=N --length=N --classes=upper,lower,digits,symbols --no-ambiguous
+                  --alphabet=<символы> --passphrase=<число слов> --separator=<разделитель>
+              passwd                  сменить мастер-пароль и заново подобрать число итераций
+              rotate-key              сменить ключ шифрования: перешифровываются только ключи записей;
+                                      прерванная смена продолжается следующим запуском
+
+            Общие параметры:
+              --dir=<каталог>         каталог хранилища (по умолчанию ~/.simple-password-manager)
+              --format=json|binary    формат хранилища
+              --unlock-time=<мс>      время разблокировки, под которое подбирается число итераций
+                                      при создании ключа и смене пароля (по умолчанию 1000)
+
+            Мастер-пароль запрашивается в терминале или берётся из переменной PASSMANAGER_PASSWORD;
+            новый пароль для passwd — из PASSMANAGER_NEW_PASSWORD.
+            """;
+
+    private final String command;
+    private final List<String> arguments = new ArrayList<>();
+    private final Map<String, String> options = new HashMap<>();
+    private final InputStream in;
+    private final OutputStream rawOut;
+    private final Writer out;
+    private final PrintStream err;
+
+    private PasswordManagerCli(String[] args, InputStream in, OutputStream out, PrintStream err) {
+        this.command = args[0];
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--")) {
+                int eq = arg.indexOf('=');
+                options.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "" : arg.substring(eq + 1));
+            } else {
+                arguments.add(arg);
+            }
+        }
+        this.in = in;
+        this.rawOut = out;
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        this.err = err;
+    }
+
+    /**
+     * Является ли аргумент именем команды: тогда приложение запускается без графического интерфейса.
+     */
+    public static boolean isCommand(String arg) {
+        return COMMANDS.contains(arg);
+    }
+
+    /**
+     * Выполняет команду.
+     *
+     * @return код завершения: {@code 0} — успех, {@code 1} — ошибка, {@code 2} — неверные аргументы
+     */
+    public static int run(String[] args, InputStream in, OutputStream out, PrintStream err) {
+        if (args.length == 0 || !isCommand(args[0])) {
+            err.print(HELP);
+            return USAGE;
+        }
+        PasswordManagerCli cli = new PasswordManagerCli(args, in, out, err);
+        try {
+            int code = cli.execute();
+            cli.out.flush();
+            return code;
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            return USAGE;
+        } catch (IOException | UncheckedIOException e) {
+            err.println("Ошибка ввода-вывода: " + e.getMessage());
+            return FAILURE;
+        }
+    }
+
+    private int execute() throws IOException {
+        switch (command) {
+            case "generate":
+                return generate();
+            case "help":
+                out.write(HELP);
+                return OK;
+            default:
+                break;
+        }
+        Path baseDir = Optional.ofNullable(options.get("dir")).map(Path::of)
+                .orElseGet(PasswordRepository::defaultDirectory);
+        Optional<VaultKey> vaultKey = unlock(baseDir);
+        if (vaultKey.isEmpty()) {
+            return FAILURE;
+        }
+        if (command.equals("passwd")) {
+            return changePassword(vaultKey.get());
+        }
+        PasswordRepository repository = new PasswordRepository(baseDir, format("format"), vaultKey.get());
+        try {
+            return switch (command) {
+                case "get" -> get(repository);
+                case "add" -> add(repository);
+                case "delete" -> delete(repository);
+                case "import" -> importVault(repository);
+                case "export" -> exportVault(repository);
+                case "audit" -> audit(repository);
+                case "rotate-key" -> rotateKey(repository);
+                default -> throw new IllegalArgumentException("Неизвестная команда: " + command);
+            };
+        } finally {
+            // Записывает отложенные изменения
+            repository.close();
+        }
+    }
+
+    /**
+     * Открывает ключ хранилища мастер-паролем: одна разблокировка на запуск команды.
+     * Для нового хранилища или ключа прежней версии без пароля введённый пароль становится мастер-паролем.
+     */
+    private Optional<VaultKey> unlock(Path baseDir) {
+        VaultKey.Status status = VaultKey.status(baseDir);
+        boolean protect = status != VaultKey.Status.PROTECTED;
+        if (status == VaultKey.Status.UNPROTECTED) {
+            err.println("Ключ хранилища хранится без защиты и будет защищён мастер-паролем");
+        }
+        Optional<char[]> password = readPassword(PASSWORD_VARIABLE, "Мастер-пароль: ", protect);
+        if (password.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            Optional<VaultKey> key = protect
+                    ? VaultKey.create(baseDir, password.get(), VaultKey.calibrate(unlockTime()))
+                    : VaultKey.unlock(baseDir, password.get());
+            if (key.isEmpty()) {
+                err.println(protect ? "Не удалось сохранить ключ хранилища" : "Неверный мастер-пароль");
+            }
+            return key;
+        } finally {
+            Arrays.fill(password.get(), '\0');
+        }
+    }
+
+    private int changePassword(VaultKey vaultKey) {
+        Optional<char[]> password = readPassword(NEW_PASSWORD_VARIABLE, "Новый мастер-пароль: ", true);
+        if (password.isEmpty()) {
+            return FAILURE;
+        }
+        try {
+            int iterations = VaultKey.calibrate(unlockTime());
+            if (!vaultKey.changePassword(password.get(), iterations)) {
+                return FAILURE;
+            }
+            err.println("Мастер-пароль изменён, итераций PBKDF2: " + iterations);
+            return OK;
+        } finally {
+            Arrays.fill(password.get(), '\0');
+        }
+    }
+
+    /**
+     * Пароль из переменной окружения или, если она не задана, из терминала.
+     *
+     * @param confirm в терминале попросить ввести пароль дважды
+     */
+    private Optional<char[]> readPassword(String variable, String prompt, boolean confirm) {
+        String value = System.getenv(variable);
+        if (value != null && !value.isEmpty()) {
+            return Optional.of(value.toCharArray());
+        }
+        Console console = System.console();
+        if (console == null) {
+            err.println("Мастер-пароль не задан: нет терминала и переменной " + variable);
+            return Optional.empty();
+        }
+        char[] password = console.readPassword(prompt);
+        if (password == null || password.length == 0) {
+            err.println("Мастер-пароль не может быть пустым");
+            return Optional.empty();
+        }
+        if (confirm) {
+            char[] repeated = console.readPassword("Повторите пароль: ");
+            boolean same = Arrays.equals(password, repeated);
+            if (repeated != null) {
+                Arrays.fill(repeated, '\0');
+            }
+            if (!same) {
+                Arrays.fill(password, '\0');
+                err.println("Пароли не совпадают");
+                return Optional.empty();
+            }
+        }
+        return Optional.of(password);
+    }
+
+    private Duration unlockTime() {
+        return Duration.ofMillis(intOption("unlock-time", (int) VaultKey.DEFAULT_UNLOCK_TIME.toMillis()));
+    }
+
+    private int get(PasswordRepository repository) throws IOException {
+        String query = single("запрос");
+        boolean passwordOnly = options.containsKey("password");
+        // Двоичное хранилище не загружается целиком: запись по id находится по индексу файла
+        Optional<MappedVault> mapped = repository.openMapped();
+        List<PasswordEntry> entries = mapped.<List<PasswordEntry>>map(vault -> vault).orElseGet(repository::load);
+        Optional<PasswordEntry> byId = mapped.isPresent()
+                ? mapped.get().find(query)
+                : entries.stream().filter(entry -> entry.getId().equals(query)).findFirst();
+        if (byId.isPresent()) {
+            return printEntry(byId.get(), passwordOnly) ? OK : FAILURE;
+        }
+        int found = 0;
+        boolean printed = true;
+        for (PasswordEntry entry : entries) {
+            if (SearchIndex.matches(entry, query)) {
+                printed &= printEntry(entry, passwordOnly);
+                found++;
+            }
+        }
+        if (found == 0) {
+            err.println("Записи не найдены: " + query);
+            return FAILURE;
+        }
+        return printed ? OK : FAILURE;
+    }
+
+    /**
+     * @return {@code false}, если пароль записи не удалось расшифровать
+     */
+    private boolean printEntry(PasswordEntry entry, boolean passwordOnly) throws IOException {
+        String password;
+        try {
+            password = entry.getPassword();
+        } catch (RuntimeException e) {
+            err.println("Не удалось расшифровать запись " + entry.getId() + ": " + e.getMessage());
+            return false;
+        } finally {
+            entry.evictPlaintext();
+        }
+        if (passwordOnly) {
+            writeLine(password);
+        } else {
+            writeLine(entry.getId(), entry.getService(), entry.getUsername(), password);
+        }
+        return true;
+    }
+
+    private int add(PasswordRepository repository) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        int code = OK;
+        int lineNumber = 0;
+        Map<String, CompletableFuture<Boolean>> added = new LinkedHashMap<>();
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> fields = splitLine(line);
+            String service = field(fields, 0);
+            String password = field(fields, 2);
+            if (service.isBlank() || password.isEmpty()) {
+                err.println("Строка " + lineNumber + ": название и пароль не могут быть пустыми");
+                code = FAILURE;
+                continue;
+            }
+            PasswordEntry entry = repository.create(service, field(fields, 1), password, field(fields, 3));
+            added.put(entry.getId(), repository.recordAdd(entry));
+        }
+        // Выводятся id только тех записей, которые уже на диске
+        boolean flushed = flush(repository);
+        for (Map.Entry<String, CompletableFuture<Boolean>> entry : added.entrySet()) {
+            if (entry.getValue().getNow(false)) {
+                writeLine(entry.getKey());
+            } else {
+                flushed = false;
+            }
+        }
+        return flushed ? code : FAILURE;
+    }
+
+    private int delete(PasswordRepository repository) throws IOException {
+        List<String> ids = new ArrayList<>(arguments);
+        if (ids.isEmpty()) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!line.isBlank()) {
+                    ids.add(line.strip());
+                }
+            }
+        }
+        Set<String> known = new HashSet<>();
+        for (PasswordEntry entry : repository.load()) {
+            known.add(entry.getId());
+        }
+        int code = OK;
+        List<CompletableFuture<Boolean>> deleted = new ArrayList<>();
+        for (String id : ids) {
+            if (known.remove(id)) {
+                deleted.add(repository.recordDelete(id));
+            } else {
+                err.println("Запись с указанным ID не найдена: " + id);
+                code = FAILURE;
+            }
+        }
+        boolean flushed = flush(repository);
+        for (CompletableFuture<Boolean> written : deleted) {
+            flushed &= written.getNow(false);
+        }
+        return flushed ? code : FAILURE;
+    }
+
+    /**
+     * Записывает отложенные изменения до выхода: код завершения должен показывать, сохранены ли они.
+     * После возврата ожидания всех поставленных в очередь записей уже завершены.
+     */
+    private boolean flush(PasswordRepository repository) {
+        if (repository.flush()) {
+            return true;
+        }
+        err.println("Не удалось записать изменения на диск");
+        return false;
+    }
+
+    private int importVault(PasswordRepository repository) {
+        String source = single("файл");
+        Set<String> known = new HashSet<>();
+        repository.load().forEach(entry -> known.add(entry.getId()));
+        // Файл читается блоками, новые записи сразу дописываются в журнал: в памяти они не накапливаются
+        OptionalLong added = STDIO.equals(source)
+                ? repository.importFrom(in, format("io-format"), known, chunk -> {
+                })
+                : repository.importFrom(Path.of(source), known, chunk -> {
+                });
+        if (added.isEmpty()) {
+            err.println("Не удалось загрузить файл: " + source);
+            return FAILURE;
+        }
+        err.println("Добавлено записей: " + added.getAsLong());
+        return OK;
+    }
+
+    private int exportVault(PasswordRepository repository) throws IOException {
+        String target = single("файл");
+        // Двоичное хранилище читается из отображённого файла по мере записи, а не загружается целиком
+        Optional<MappedVault> mapped = repository.openMapped();
+        List<PasswordEntry> entries = mapped.<List<PasswordEntry>>map(vault -> vault).orElseGet(repository::load);
+        boolean saved;
+        if (STDIO.equals(target)) {
+            // Текст, уже записанный в вывод, должен оказаться перед содержимым хранилища
+            out.flush();
+            saved = repository.saveTo(rawOut, format("io-format"), entries);
+        } else {
+            saved = repository.saveTo(Path.of(target), entries);
+        }
+        if (!saved) {
+            err.println("Не удалось сохранить файл: " + target);
+            return FAILURE;
+        }
+        return OK;
+    }
+
+    private int rotateKey(PasswordRepository repository) {
+        boolean resumed = repository.isKeyRotationPending();
+        if (!repository.rotateKey()) {
+            err.println("Не удалось сменить ключ шифрования, смена продолжится при следующем запуске");
+            return FAILURE;
+        }
+        err.println(resumed ? "Прерванная смена ключа шифрования завершена" : "Ключ шифрования изменён");
+        return OK;
+    }
+
+    private int audit(PasswordRepository repository) throws IOException {
+        int weakest = intOption("weakest", 10);
+        List<PasswordEntry> entries = repository.load();
+        List<List<String>> reused = repository.findReused(entries);
+        StrengthReport report = new PasswordStrengthService().audit(entries, weakest);
+
+        writeLine("Всего записей", Long.toString(report.total()));
+        for (PasswordStrength strength : PasswordStrength.values()) {
+            writeLine(strength.getLabel(), Long.toString(report.count(strength)));
+        }
+        writeLine("Повторяющиеся пароли", Long.toString(reused.stream().mapToLong(List::size).sum()));
+        String breachFile = options.get("breaches");
+        if (breachFile != null) {
+            try (BreachedPasswords breaches = BreachedPasswords.open(Path.of(breachFile))) {
+                writeLine("Найдены в утечках", Integer.toString(breaches.scan(entries).size()));
+            }
+        }
+        for (StrengthReport.WeakEntry entry : report.weakest()) {
+            writeLine(entry.id(), entry.service(), entry.username(), entry.strength().getLabel(),
+                    String.format(Locale.ROOT, "%.1f", entry.entropy()));
+        }
+        return OK;
+    }
+
+    private int generate() throws IOException {
+        int count = intOption("count", 1);
+        PasswordPolicy policy = policy();
+        for (int done = 0; done < count; done += GENERATE_BATCH) {
+            for (String password : PasswordGenerator.generate(policy, Math.min(GENERATE_BATCH, count - done))) {
+                writeLine(password);
+            }
+        }
+        return OK;
+    }
+
+    private PasswordPolicy policy() {
+        if (options.containsKey("passphrase")) {
+            PasswordPolicy policy = PasswordPolicy.passphrase(intOption("passphrase", 6));
+            return options.containsKey("separator") ? policy.withSeparator(options.get("separator")) : policy;
+        }
+        PasswordPolicy policy = PasswordPolicy.characters(intOption("length", 20))
+                .withExcludeAmbiguous(options.containsKey("no-ambiguous"));
+        if (options.containsKey("alphabet")) {
+            policy = policy.withAlphabet(options.get("alphabet"));
+        }
+        if (options.containsKey("classes")) {
+            Set<PasswordPolicy.CharacterClass> classes = EnumSet.noneOf(PasswordPolicy.CharacterClass.class);
+            for (String name : options.get("classes").split(",")) {
+                switch (name.strip().toLowerCase(Locale.ROOT)) {
+                    case "upper" -> classes.add(PasswordPolicy.CharacterClass.UPPERCASE);
+                    case "lower" -> classes.add(PasswordPolicy.CharacterClass.LOWERCASE);
+                    case "digits" -> classes.add(PasswordPolicy.CharacterClass.DIGITS);
+                    case "symbols" -> classes.add(PasswordPolicy.CharacterClass.SYMBOLS);
+                    case "none", "" -> {
+                    }
+                    default -> throw new IllegalArgumentException("Неизвестный класс символов: " + name);
+                }
+            }
+            policy = policy.withRequired(classes);
+        } else if (options.containsKey("alphabet")) {
+            // В своём алфавите обязательны только те классы, символы которых в нём есть
+            Set<PasswordPolicy.CharacterClass> present = EnumSet.noneOf(PasswordPolicy.CharacterClass.class);
+            for (PasswordPolicy.CharacterClass characterClass : PasswordPolicy.CharacterClass.values()) {
+                if (options.get("alphabet").chars().anyMatch(c -> characterClass.contains((char) c))) {
+                    present.add(characterClass);
+                }
+            }
+            present.retainAll(policy.required());
+            policy = policy.withRequired(present);
+        }
+        return policy;
+    }
+
+    private String single(String name) {
+        if (arguments.size() != 1) {
+            throw new IllegalArgumentException("Команда " + command + " ожидает один аргумент: " + name);
+        }
+        return arguments.get(0);
+    }
+
+    private int intOption(String name, int defaultValue) {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed < 0) {
+                throw new NumberFormatException();
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Параметр --" + name + " должен быть неотрицательным числом: " + value);
+        }
+    }
+
+    private VaultFormat format(String name) {
+        String value = options.get(name);
+        if (value == null) {
+            return VaultFormat.JSON;
+        }
+        try {
+            return VaultFormat.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неизвестный формат хранилища: " + value);
+        }
+    }
+
+    private void writeLine(String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                out.write('\t');
+            }
+            escape(fields[i] == null ? "" : fields[i]);
+        }
+        out.write('\n');
+    }
+
+    private void escape(String field) throws IOException {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            switch (c) {
+                case '\t' -> out.write("\\t");
+                case '\n' -> out.write("\\n");
+                case '\r' -> out.write("\\r");
+                case '\\' -> out.write("\\\\");
+                default -> out.write(c);
+            }
+        }
+    }
+
+    /**
+     * Разбивает строку ввода на поля и снимает экранирование.
+     */
+    private static List<String> splitLine(String line) {
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\\' && i + 1 < line.length()) {
+                char next = line.charAt(++i);
+                field.append(switch (next) {
+                    case 't' -> '\t';
+                    case 'n' -> '\n';
+                    case 'r' -> '\r';
+                    default -> next;
+                });
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String field(List<String> fields, int index) {
+        return index < fields.size() ? fields.get(index) : "";
+    }
+}
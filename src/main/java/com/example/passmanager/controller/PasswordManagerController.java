@@ -1,35 +1,115 @@
 package com.example.passmanager.controller;
 
+import com.example.passmanager.model.EntryChanges;
+import com.example.passmanager.model.EntryStore;
 import com.example.passmanager.model.PasswordEntry;
 import com.example.passmanager.model.PasswordStrength;
+import com.example.passmanager.model.SearchIndex;
+import com.example.passmanager.service.BreachedPasswords;
+import com.example.passmanager.service.MappedVault;
 import com.example.passmanager.service.PasswordGenerator;
 import com.example.passmanager.service.PasswordRepository;
 import com.example.passmanager.service.PasswordStrengthService;
+import com.example.passmanager.service.ProgressListener;
+import com.example.passmanager.service.VaultFormat;
 import com.example.passmanager.view.PasswordManagerView;
+import javafx.application.Platform;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 
 /**
  * Связывает представление с моделью.
+ * Вся работа с диском и шифрованием выполняется в фоне, результаты возвращаются в поток JavaFX.
  */
 public final class PasswordManagerController {
 
+    private static final Executor FX = Platform::runLater;
+    /**
+     * С какого размера двоичное хранилище просматривается через отображение в память, а не загружается целиком.
+     * Перед первым изменением такое хранилище всё же загружается в память, см. {@link #leaveMappedView(Runnable)}.
+     */
+    private static final int MAPPED_VIEW_THRESHOLD = 200_000;
+
     private final PasswordRepository repository;
     private final PasswordManagerView view;
-    private final List<PasswordEntry> entries;
+    private final EntryStore entries;
     private final PasswordStrengthService strengthService;
+    /**
+     * База утечек; {@code null}, если она не задана при запуске.
+     */
+    private final BreachedPasswords breaches;
+    private final Set<String> breached = new HashSet<>();
+
+    private CompletableFuture<?> currentTask;
+    private MappedVault mapped;
+    /**
+     * Флаг отмены текущего поиска по отображённому хранилищу; поднимается, когда запрос меняется.
+     */
+    private AtomicBoolean mappedSearch = new AtomicBoolean();
+    private SearchIndex searchIndex = new SearchIndex();
+    private String query = "";
 
     public PasswordManagerController(PasswordRepository repository,
                                      PasswordStrengthService strengthService,
+                                     BreachedPasswords breaches,
                                      PasswordManagerView view) {
         this.repository = repository;
         this.view = view;
         this.strengthService = strengthService;
-        this.entries = new ArrayList<>(repository.load());
-        refreshView();
-        attachHandlers();
+        this.breaches = breaches;
+        this.entries = new EntryStore();
+        loadEntries();
+    }
+
+    private void loadEntries() {
+        view.showProgress("Загрузка хранилища…", false);
+        if (repository.getFormat() != VaultFormat.BINARY) {
+            loadInMemory();
+            return;
+        }
+        repository.openMappedAsync(MAPPED_VIEW_THRESHOLD).whenCompleteAsync((opened, error) -> {
+            if (error != null || opened.isEmpty()) {
+                loadInMemory();
+                return;
+            }
+            view.hideProgress();
+            mapped = opened.get();
+            view.setMappedEntries(mapped);
+            attachHandlers();
+            refreshReused();
+            checkBreaches(mapped);
+        }, FX);
+    }
+
+    private void loadInMemory() {
+        // Индекс поиска строится в фоне вместе с загрузкой, дальше он только дополняется
+        repository.loadAsync()
+                .thenApplyAsync(loaded -> new Loaded(loaded, new SearchIndex(loaded)))
+                .whenCompleteAsync((loaded, error) -> {
+                    view.hideProgress();
+                    if (error != null) {
+                        view.showError("Не удалось загрузить хранилище: " + rootCause(error).getMessage());
+                    } else {
+                        entries.merge(loaded.entries());
+                        searchIndex = loaded.index();
+                    }
+                    refreshView();
+                    attachHandlers();
+                    refreshReused();
+                    checkBreaches(entries.snapshot());
+                }, FX);
     }
 
     private void attachHandlers() {
@@ -40,6 +120,13 @@ public final class PasswordManagerController {
         view.onPasswordInput(this::handlePasswordInput);
         view.onImport(this::handleImport);
         view.onExport(this::handleExport);
+        view.onRotateKey(this::handleRotateKey);
+        view.onCancelTask(this::cancelCurrentTask);
+        view.onSearch(this::handleSearch);
+        if (repository.isKeyRotationPending()) {
+            // Прерванная смена ключа продолжается сразу после открытия хранилища
+            handleRotateKey();
+        }
     }
 
     private void handleAdd(String service, String login, String password, String notes) {
@@ -47,19 +134,55 @@ public final class PasswordManagerController {
             view.showError("Название и пароль не могут быть пустыми");
             return;
         }
-        PasswordEntry entry = repository.create(service, login, password, notes);
-        entries.add(entry);
-        repository.save(entries);
-        refreshView();
-        view.clearForm();
-        view.showInfo("Запись сохранена");
+        if (mapped != null) {
+            leaveMappedView(() -> handleAdd(service, login, password, notes));
+            return;
+        }
+        // Пароль шифруется в потоке ввода-вывода; запись появляется в списке, когда она уже на диске
+        repository.recordAddAsync(service, login, password, notes).whenCompleteAsync((entry, error) -> {
+            if (error != null) {
+                view.showError("Не удалось сохранить запись");
+                return;
+            }
+            entries.add(entry);
+            searchIndex.add(entry);
+            if (SearchIndex.matches(entry, query)) {
+                view.applyChanges(EntryChanges.added(entry));
+            }
+            view.clearForm();
+            view.showInfo("Запись сохранена");
+            refreshReused();
+            checkBreaches(List.of(entry));
+        }, FX);
     }
 
     private void handleDelete(String entryId) {
-        if (entries.removeIf(entry -> entry.getId().equals(entryId))) {
-            repository.save(entries);
-            refreshView();
-            view.showInfo("Запись удалена");
+        if (mapped != null) {
+            leaveMappedView(() -> handleDelete(entryId));
+            return;
+        }
+        PasswordEntry removed = entries.remove(entryId);
+        if (removed != null) {
+            searchIndex.remove(entryId);
+            view.applyChanges(EntryChanges.removed(entryId));
+            if (breached.remove(entryId)) {
+                view.setBreachedEntries(breached);
+            }
+            repository.recordDeleteAsync(entryId).whenCompleteAsync((saved, error) -> {
+                if (error == null && saved) {
+                    refreshReused();
+                    view.showInfo("Запись удалена");
+                    return;
+                }
+                // Удаление не попало на диск и отброшено: запись возвращается, чтобы список совпадал с хранилищем
+                entries.add(removed);
+                searchIndex.add(removed);
+                if (SearchIndex.matches(removed, query)) {
+                    view.applyChanges(EntryChanges.added(removed));
+                }
+                checkBreaches(List.of(removed));
+                view.showError("Не удалось удалить запись: изменение не записано на диск");
+            }, FX);
         } else {
             view.showError("Запись с указанным ID не найдена");
         }
@@ -71,62 +194,287 @@ public final class PasswordManagerController {
         handlePasswordInput(generated);
     }
 
+    private void handleSearch(String text) {
+        query = text == null ? "" : text.strip();
+        refreshView();
+    }
+
+    /**
+     * Полностью перестраивает таблицу. Отдельные добавления и удаления передаются в представление
+     * через {@link EntryChanges}, чтобы не перерисовывать все строки.
+     */
     private void refreshView() {
-        view.setEntries(entries);
+        if (mapped != null) {
+            refreshMappedView();
+            return;
+        }
+        view.setEntries(query.isEmpty() ? entries.entries() : searchIndex.search(query));
+    }
+
+    /**
+     * Без запроса таблица листает отображённое хранилище. С запросом хранилище просматривается целиком в фоне:
+     * индекс поиска для него не строится, чтобы расход памяти не рос с размером хранилища.
+     * Найденные записи показываются обычным списком, который можно сортировать.
+     */
+    private void refreshMappedView() {
+        mappedSearch.set(true);
+        if (query.isEmpty()) {
+            view.setMappedEntries(mapped);
+            return;
+        }
+        AtomicBoolean cancelled = new AtomicBoolean();
+        mappedSearch = cancelled;
+        MappedVault vault = mapped;
+        String text = query;
+        CompletableFuture.supplyAsync(() -> {
+            List<PasswordEntry> found = new ArrayList<>();
+            for (int i = 0; i < vault.size() && !cancelled.get(); i++) {
+                PasswordEntry entry = vault.get(i);
+                if (SearchIndex.matches(entry, text)) {
+                    found.add(entry);
+                }
+            }
+            return found;
+        }).whenCompleteAsync((found, error) -> {
+            // Запрос мог смениться, а хранилище — загрузиться в память, пока шёл поиск
+            if (cancelled.get() || mapped != vault) {
+                return;
+            }
+            if (error != null) {
+                System.err.println("Не удалось выполнить поиск: " + rootCause(error).getMessage());
+                return;
+            }
+            view.setEntries(found);
+        }, FX);
+    }
+
+    /**
+     * Загружает отображённое хранилище в память перед первым изменением и затем выполняет {@code edit}.
+     * Дальше изменения пишутся в журнал так же, как для небольших хранилищ, а отображение закрывается.
+     */
+    private void leaveMappedView(Runnable edit) {
+        if (currentTask != null) {
+            view.showError("Дождитесь завершения текущей операции");
+            return;
+        }
+        view.showProgress("Загрузка хранилища для изменения…", false);
+        CompletableFuture<Loaded> loading = repository.loadAsync()
+                .thenApplyAsync(loaded -> new Loaded(loaded, new SearchIndex(loaded)));
+        track(loading, (loaded, error) -> {
+            if (error != null) {
+                view.showError("Не удалось загрузить хранилище: " + rootCause(error).getMessage());
+                return;
+            }
+            mappedSearch.set(true);
+            try {
+                mapped.close();
+            } catch (IOException e) {
+                System.err.println("Не удалось закрыть отображённое хранилище: " + e.getMessage());
+            }
+            mapped = null;
+            entries.merge(loaded.entries());
+            searchIndex = loaded.index();
+            refreshView();
+            edit.run();
+        });
+    }
+
+    /**
+     * Пересчитывает в фоне, какие записи используют один и тот же пароль, и отмечает их в таблице.
+     */
+    private void refreshReused() {
+        repository.findReusedAsync(mapped != null ? mapped : entries.snapshot()).whenCompleteAsync((groups, error) -> {
+            if (error != null) {
+                System.err.println("Не удалось найти повторяющиеся пароли: " + rootCause(error).getMessage());
+                return;
+            }
+            Set<String> reused = new HashSet<>();
+            groups.forEach(reused::addAll);
+            view.setReusedEntries(reused);
+        }, FX);
+    }
+
+    /**
+     * Проверяет пароли записей по базе утечек в фоне и отмечает найденные в таблице.
+     */
+    private void checkBreaches(List<PasswordEntry> toCheck) {
+        if (breaches == null || toCheck.isEmpty()) {
+            return;
+        }
+        CompletableFuture.supplyAsync(() -> breaches.scan(toCheck)).whenCompleteAsync((found, error) -> {
+            if (error != null) {
+                System.err.println("Не удалось проверить пароли по базе утечек: " + rootCause(error).getMessage());
+                return;
+            }
+            // Запись могла быть удалена, пока шла проверка; отображённое хранилище не меняется
+            found.keySet().stream().filter(id -> mapped != null || entries.contains(id)).forEach(breached::add);
+            view.setBreachedEntries(breached);
+        }, FX);
     }
 
     private void handlePasswordInput(String password) {
         PasswordStrength strength = strengthService.evaluate(password);
         view.updatePasswordStrength(strength);
+        if (breaches != null) {
+            view.updatePasswordBreaches(breaches.count(password));
+        }
     }
 
     private void handleImport(Path path) {
         if (path == null) {
             return;
         }
-        
-        // Проверяем расширение файла
-        String fileName = path.getFileName().toString().toLowerCase();
-        if (!fileName.endsWith(".json")) {
-            view.showError("Можно загружать только JSON файлы (.json)");
+
+        // Формат файла определяется расширением
+        if (VaultFormat.fromPath(path).isEmpty()) {
+            view.showError("Можно загружать только файлы хранилища (.json, .pmv)");
             return;
         }
-        
-        repository.loadFrom(path).ifPresentOrElse(loaded -> {
-            // Объединяем загруженные записи с существующими (новые записи не пропадают)
-            for (PasswordEntry loadedEntry : loaded) {
-                // Проверяем, нет ли уже записи с таким ID
-                boolean exists = entries.stream()
-                        .anyMatch(entry -> entry.getId().equals(loadedEntry.getId()));
-                if (!exists) {
-                    entries.add(loadedEntry);
-                }
+        if (mapped != null) {
+            leaveMappedView(() -> handleImport(path));
+            return;
+        }
+        if (!startTask("Импорт…")) {
+            return;
+        }
+
+        // Файл читается блоками: новые записи каждого блока сразу пишутся в журнал и появляются в таблице
+        Set<String> knownIds = new HashSet<>();
+        entries.entries().forEach(entry -> knownIds.add(entry.getId()));
+        CompletableFuture<OptionalLong> importing = repository.importFromAsync(path, knownIds, progressListener(),
+                chunk -> Platform.runLater(() -> {
+                    // Только записи, которых ещё нет в списке: индекс и таблица не получают повторов
+                    List<PasswordEntry> added = entries.merge(chunk);
+                    searchIndex.addAll(added);
+                    view.applyChanges(EntryChanges.added(added.stream()
+                            .filter(entry -> SearchIndex.matches(entry, query))
+                            .toList()));
+                    checkBreaches(added);
+                }));
+        track(importing, (imported, error) -> {
+            // Блоки, записанные до отмены или ошибки, остаются в хранилище
+            refreshReused();
+            if (isCancellation(error)) {
+                view.showInfo("Импорт отменён");
+            } else if (error != null) {
+                view.showError("Не удалось загрузить файл: " + rootCause(error).getMessage());
+            } else if (imported.isPresent()) {
+                view.showInfo("Записи объединены с существующими, добавлено: " + imported.getAsLong());
+            } else {
+                view.showError("Не удалось загрузить файл. Убедитесь, что формат файла соответствует расширению.");
             }
-            repository.save(entries);
-            refreshView();
-            view.showInfo("Записи загружены и объединены с существующими");
-        }, () -> view.showError("Не удалось загрузить JSON файл. Убедитесь, что файл имеет формат JSON."));
+        });
     }
 
     private void handleExport(Path path) {
         if (path == null) {
             return;
         }
-        
-        // Проверяем расширение файла
-        String fileName = path.getFileName().toString().toLowerCase();
-        if (!fileName.endsWith(".json")) {
-            view.showError("Файл должен иметь расширение .json");
+
+        // Формат файла определяется расширением
+        if (VaultFormat.fromPath(path).isEmpty()) {
+            view.showError("Файл должен иметь расширение .json или .pmv");
             return;
         }
-        
-        boolean success = repository.saveTo(path, entries);
-        if (success) {
-            view.showInfo("Записи сохранены в JSON файл: " + path.getFileName());
-        } else {
-            view.showError("Не удалось сохранить JSON файл. Проверьте права доступа и формат файла.");
+        if (!startTask("Экспорт…")) {
+            return;
         }
+
+        List<PasswordEntry> toExport = mapped != null ? mapped : entries.snapshot();
+        CompletableFuture<Boolean> saving = repository.saveToAsync(path, toExport, progressListener());
+        track(saving, (success, error) -> {
+            if (isCancellation(error)) {
+                view.showInfo("Экспорт отменён");
+            } else if (error == null && success) {
+                view.showInfo("Записи сохранены в файл: " + path.getFileName());
+            } else {
+                view.showError("Не удалось сохранить файл. Проверьте права доступа и формат файла.");
+            }
+        });
+    }
+
+    /**
+     * Меняет ключ шифрования в фоне: перешифровываются только ключи записей, записи можно менять и во время смены.
+     */
+    private void handleRotateKey() {
+        if (!startTask("Смена ключа шифрования…")) {
+            return;
+        }
+        CompletableFuture<Boolean> rotating = repository.rotateKeyAsync(progressListener());
+        track(rotating, (rotated, error) -> {
+            if (isCancellation(error)) {
+                view.showInfo("Смена ключа приостановлена и продолжится при следующем запуске");
+            } else if (error == null && rotated) {
+                view.showInfo("Ключ шифрования изменён");
+            } else {
+                view.showError("Не удалось сменить ключ шифрования, смена продолжится при следующем запуске");
+            }
+        });
+    }
+
+    private boolean startTask(String message) {
+        if (currentTask != null) {
+            view.showError("Дождитесь завершения текущей операции");
+            return false;
+        }
+        view.showProgress(message, true);
+        return true;
+    }
+
+    /**
+     * Делает {@code task} текущей операцией и вызывает {@code handler} в потоке JavaFX, когда она закончится.
+     * Отменённая операция считается законченной, только когда фоновый поток хранилища её действительно остановил:
+     * до этого индикатор остаётся на экране, а новые операции не запускаются.
+     */
+    private <T> void track(CompletableFuture<T> task, BiConsumer<T, Throwable> handler) {
+        currentTask = task;
+        task.whenComplete((result, error) -> {
+            CompletableFuture<Void> stopped = isCancellation(error)
+                    ? repository.afterQueued()
+                    : CompletableFuture.completedFuture(null);
+            stopped.whenCompleteAsync((ignored, stopError) -> {
+                finishTask();
+                handler.accept(result, error);
+            }, FX);
+        });
+    }
+
+    private void finishTask() {
+        currentTask = null;
+        view.hideProgress();
+    }
+
+    private void cancelCurrentTask() {
+        if (currentTask != null && !currentTask.isDone()) {
+            view.showProgress("Отмена…", false);
+            currentTask.cancel(true);
+        }
+    }
+
+    private ProgressListener progressListener() {
+        return (done, total) -> {
+            if (total > 0) {
+                double fraction = (double) done / total;
+                Platform.runLater(() -> view.updateProgress(fraction));
+            }
+        };
     }
-}
 
+    private static boolean isCancellation(Throwable error) {
+        return error != null && rootCause(error) instanceof CancellationException;
+    }
 
+    private static Throwable rootCause(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * Загруженные записи вместе с построенным по ним индексом поиска.
+     */
+    private record Loaded(List<PasswordEntry> entries, SearchIndex index) {
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.passmanager.model;
+
+import java.util.List;
+
+/**
+ * Набор изменений списка записей для точечного обновления таблицы.
+ *
+ * @param added   новые записи, добавляются в конец
+ * @param removed id удалённых записей
+ * @param updated записи, заменяющие показанные записи с тем же id
+ */
+public record EntryChanges(List<PasswordEntry> added, List<String> removed, List<PasswordEntry> updated) {
+
+    public EntryChanges {
+        added = List.copyOf(added);
+        removed = List.copyOf(removed);
+        updated = List.copyOf(updated);
+    }
+
+    public static EntryChanges added(List<PasswordEntry> entries) {
+        return new EntryChanges(entries, List.of(), List.of());
+    }
+
+    public static EntryChanges added(PasswordEntry entry) {
+        return added(List.of(entry));
+    }
+
+    public static EntryChanges removed(String id) {
+        return new EntryChanges(List.of(), List.of(id), List.of());
+    }
+
+    public static EntryChanges updated(PasswordEntry entry) {
+        return new EntryChanges(List.of(), List.of(), List.of(entry));
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && updated.isEmpty();
+    }
+}
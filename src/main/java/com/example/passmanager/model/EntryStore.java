@@ -0,0 +1,94 @@
+package com.example.passmanager.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Записи менеджера паролей в памяти: индекс по id и порядок добавления для таблицы.
+ * Поиск, удаление и проверка на дубликат выполняются за O(1). Класс не потокобезопасен.
+ */
+public final class EntryStore {
+
+    private final Map<String, PasswordEntry> byId;
+
+    public EntryStore() {
+        this.byId = new LinkedHashMap<>();
+    }
+
+    public EntryStore(Collection<PasswordEntry> entries) {
+        this.byId = new LinkedHashMap<>(Math.max(16, (int) (entries.size() / 0.75f) + 1));
+        merge(entries);
+    }
+
+    /**
+     * Добавляет запись в конец.
+     *
+     * @return {@code false}, если запись с таким id уже есть
+     */
+    public boolean add(PasswordEntry entry) {
+        return byId.putIfAbsent(entry.getId(), entry) == null;
+    }
+
+    /**
+     * Заменяет запись с тем же id, сохраняя её место в порядке.
+     *
+     * @return предыдущая запись или {@code null}, если её не было (тогда запись добавляется в конец)
+     */
+    public PasswordEntry replace(PasswordEntry entry) {
+        return byId.put(entry.getId(), entry);
+    }
+
+    public PasswordEntry remove(String id) {
+        return byId.remove(id);
+    }
+
+    public Optional<PasswordEntry> get(String id) {
+        return Optional.ofNullable(byId.get(id));
+    }
+
+    public boolean contains(String id) {
+        return byId.containsKey(id);
+    }
+
+    /**
+     * Добавляет записи, id которых ещё нет в хранилище; дубликаты внутри пакета тоже отбрасываются.
+     *
+     * @return добавленные записи в порядке добавления
+     */
+    public List<PasswordEntry> merge(Collection<PasswordEntry> entries) {
+        List<PasswordEntry> added = new ArrayList<>();
+        for (PasswordEntry entry : entries) {
+            if (byId.putIfAbsent(entry.getId(), entry) == null) {
+                added.add(entry);
+            }
+        }
+        return added;
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    public boolean isEmpty() {
+        return byId.isEmpty();
+    }
+
+    /**
+     * Записи в порядке добавления; представление только для чтения, отражающее изменения хранилища.
+     */
+    public Collection<PasswordEntry> entries() {
+        return Collections.unmodifiableCollection(byId.values());
+    }
+
+    /**
+     * Неизменяемая копия записей для передачи в фоновые операции.
+     */
+    public List<PasswordEntry> snapshot() {
+        return List.copyOf(byId.values());
+    }
+}
@@ -6,18 +6,26 @@ import java.util.Objects;
 
 /**
  * Модель одной записи в менеджере паролей.
+ * Запись, загруженная из хранилища, держит только шифротекст: пароль расшифровывается при каждом обращении,
+ * а повторные обращения обслуживает ограниченный кэш хранилища.
  */
 public final class PasswordEntry implements Serializable {
 
-    private static final long serialVersionUID = 1L;
+    /**
+     * Версия 2: запись может держать шифротекст вместо пароля, а расшифровка при сериализации не сохраняется.
+     */
+    private static final long serialVersionUID = 2L;
 
     private final String id;
     private final String service;
     private final String username;
-    private final String password;
     private final String notes;
     private final LocalDateTime createdAt;
 
+    private final String encryptedPassword;
+    private final transient Decryptor decryptor;
+    private final String password;
+
     public PasswordEntry(String id,
                          String service,
                          String username,
@@ -30,6 +38,38 @@ public final class PasswordEntry implements Serializable {
         this.password = Objects.requireNonNull(password, "password");
         this.notes = notes == null ? "" : notes;
         this.createdAt = Objects.requireNonNull(createdAt, "createdAt");
+        this.encryptedPassword = null;
+        this.decryptor = null;
+    }
+
+    private PasswordEntry(String id,
+                          String service,
+                          String username,
+                          String encryptedPassword,
+                          String notes,
+                          LocalDateTime createdAt,
+                          Decryptor decryptor) {
+        this.id = Objects.requireNonNull(id, "id");
+        this.service = Objects.requireNonNull(service, "service");
+        this.username = username == null ? "" : username;
+        this.notes = notes == null ? "" : notes;
+        this.createdAt = Objects.requireNonNull(createdAt, "createdAt");
+        this.encryptedPassword = Objects.requireNonNull(encryptedPassword, "encryptedPassword");
+        this.decryptor = Objects.requireNonNull(decryptor, "decryptor");
+        this.password = null;
+    }
+
+    /**
+     * Создаёт запись с зашифрованным паролем, который расшифровывается при вызове {@link #getPassword()}.
+     */
+    public static PasswordEntry encrypted(String id,
+                                          String service,
+                                          String username,
+                                          String encryptedPassword,
+                                          String notes,
+                                          LocalDateTime createdAt,
+                                          Decryptor decryptor) {
+        return new PasswordEntry(id, service, username, encryptedPassword, notes, createdAt, decryptor);
     }
 
     public String getId() {
@@ -44,8 +84,39 @@ public final class PasswordEntry implements Serializable {
         return username;
     }
 
+    /**
+     * Пароль записи. Для загруженной записи возвращается короткоживущая копия, её не стоит сохранять.
+     *
+     * @throws IllegalStateException если запись с шифротекстом восстановлена из сериализованного вида
+     *                               и расшифровать пароль нечем
+     */
     public String getPassword() {
-        return password;
+        if (encryptedPassword == null) {
+            return password;
+        }
+        if (decryptor == null) {
+            throw new IllegalStateException("Пароль записи " + id + " нельзя расшифровать: запись восстановлена "
+                    + "из сериализованного вида без ключа хранилища");
+        }
+        return decryptor.decrypt(encryptedPassword);
+    }
+
+    /**
+     * Шифротекст, с которым запись была загружена, или {@code null} для записей, созданных из открытого пароля.
+     * Неизменённые записи сохраняются с этим шифротекстом без повторного шифрования.
+     */
+    public String getEncryptedPassword() {
+        return encryptedPassword;
+    }
+
+    /**
+     * Затирает расшифрованный пароль в кэше; при следующем обращении он будет расшифрован заново.
+     * Вызывается после разового чтения, чтобы массовые проверки всех записей не заполняли кэш.
+     */
+    public void evictPlaintext() {
+        if (decryptor != null) {
+            decryptor.evict(encryptedPassword);
+        }
     }
 
     public String getNotes() {
@@ -55,5 +126,18 @@ public final class PasswordEntry implements Serializable {
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
-}
 
+    /**
+     * Расшифровка пароля загруженной записи.
+     */
+    public interface Decryptor {
+
+        String decrypt(String encryptedPassword);
+
+        /**
+         * Забывает расшифрованный пароль, если он где-то сохранён.
+         */
+        default void evict(String encryptedPassword) {
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.example.passmanager.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Полнотекстовый индекс по сервису, логину и заметкам записей.
+ * Запрос от трёх символов ищется как подстрока через пересечение списков триграмм,
+ * более короткий — как начало слова через индекс префиксов. Регистр не учитывается.
+ * Индекс обновляется по одной записи; удалённые записи пропускаются при поиске,
+ * а списки перестраиваются, когда удалённых становится больше живых. Класс не потокобезопасен.
+ */
+public final class SearchIndex {
+
+    private static final char FIELD_SEPARATOR = '\u0000';
+    private static final long PREFIX_1 = 1L << 48;
+    private static final long PREFIX_2 = 2L << 48;
+    private static final int MIN_COMPACTION = 1024;
+
+    private final PostingsMap postings = new PostingsMap();
+    private final Map<String, Integer> docById = new HashMap<>();
+    private final List<PasswordEntry> docs = new ArrayList<>();
+    private final List<String> texts = new ArrayList<>();
+    private int removed;
+
+    public SearchIndex() {
+    }
+
+    public SearchIndex(Collection<PasswordEntry> entries) {
+        addAll(entries);
+    }
+
+    /**
+     * Добавляет запись в индекс; запись с тем же id заменяется.
+     */
+    public void add(PasswordEntry entry) {
+        remove(entry.getId());
+        int doc = docs.size();
+        String text = textOf(entry);
+        docs.add(entry);
+        texts.add(text);
+        docById.put(entry.getId(), doc);
+        // Номера документов растут, поэтому списки остаются упорядоченными без сортировки
+        for (long key : keysOf(text)) {
+            postings.getOrCreate(key).add(doc);
+        }
+    }
+
+    public void addAll(Collection<PasswordEntry> entries) {
+        for (PasswordEntry entry : entries) {
+            add(entry);
+        }
+    }
+
+    public boolean remove(String id) {
+        Integer doc = docById.remove(id);
+        if (doc == null) {
+            return false;
+        }
+        docs.set(doc, null);
+        texts.set(doc, null);
+        removed++;
+        if (removed >= MIN_COMPACTION && removed > docById.size()) {
+            compact();
+        }
+        return true;
+    }
+
+    public void clear() {
+        postings.clear();
+        docById.clear();
+        docs.clear();
+        texts.clear();
+        removed = 0;
+    }
+
+    public int size() {
+        return docById.size();
+    }
+
+    /**
+     * Записи, в сервисе, логине или заметках которых встречается запрос, в порядке добавления в индекс.
+     * Пустой запрос возвращает все записи.
+     */
+    public List<PasswordEntry> search(String query) {
+        String normalized = normalize(query).strip();
+        if (normalized.isEmpty()) {
+            return liveDocs();
+        }
+        if (normalized.length() >= 3) {
+            return searchTrigrams(normalized);
+        }
+        if (isWord(normalized)) {
+            Postings matches = postings.get(prefixKey(normalized));
+            return matches == null ? List.of() : collect(matches.docs, matches.size, null);
+        }
+        return scan(normalized);
+    }
+
+    /**
+     * Проверяет одну запись по тем же правилам, что и {@link #search(String)}, не обращаясь к индексу.
+     */
+    public static boolean matches(PasswordEntry entry, String query) {
+        String normalized = normalize(query).strip();
+        if (normalized.isEmpty()) {
+            return true;
+        }
+        String text = textOf(entry);
+        if (normalized.length() >= 3 || !isWord(normalized)) {
+            return text.contains(normalized);
+        }
+        for (int i = text.indexOf(normalized); i >= 0; i = text.indexOf(normalized, i + 1)) {
+            if (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<PasswordEntry> searchTrigrams(String query) {
+        long[] keys = trigrams(query);
+        Postings[] lists = new Postings[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            lists[i] = postings.get(keys[i]);
+            if (lists[i] == null) {
+                return List.of();
+            }
+        }
+        // Начинаем с самого короткого списка и отсеиваем кандидатов двоичным поиском по остальным
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        int[] candidates = Arrays.copyOf(lists[0].docs, lists[0].size);
+        int count = candidates.length;
+        for (int i = 1; i < lists.length && count > 0; i++) {
+            count = intersect(candidates, count, lists[i]);
+        }
+        // Триграммы могут совпасть в разных местах текста, поэтому подстрока проверяется напрямую
+        return collect(candidates, count, query);
+    }
+
+    private static int intersect(int[] candidates, int count, Postings list) {
+        int kept = 0;
+        int from = 0;
+        for (int i = 0; i < count; i++) {
+            int position = Arrays.binarySearch(list.docs, from, list.size, candidates[i]);
+            if (position >= 0) {
+                candidates[kept++] = candidates[i];
+                from = position + 1;
+            } else {
+                from = -position - 1;
+            }
+        }
+        return kept;
+    }
+
+    private List<PasswordEntry> collect(int[] candidates, int count, String substring) {
+        List<PasswordEntry> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int doc = candidates[i];
+            PasswordEntry entry = docs.get(doc);
+            if (entry != null && (substring == null || texts.get(doc).contains(substring))) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    private List<PasswordEntry> scan(String query) {
+        List<PasswordEntry> result = new ArrayList<>();
+        for (int doc = 0; doc < docs.size(); doc++) {
+            String text = texts.get(doc);
+            if (text != null && text.contains(query)) {
+                result.add(docs.get(doc));
+            }
+        }
+        return result;
+    }
+
+    private List<PasswordEntry> liveDocs() {
+        List<PasswordEntry> result = new ArrayList<>(docById.size());
+        for (PasswordEntry entry : docs) {
+            if (entry != null) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Перестраивает индекс без удалённых записей.
+     */
+    private void compact() {
+        List<PasswordEntry> live = liveDocs();
+        clear();
+        addAll(live);
+    }
+
+    /**
+     * Ключи документа без повторов: все триграммы текста и префиксы длины 1 и 2 каждого слова.
+     */
+    private static long[] keysOf(String text) {
+        long[] keys = new long[Math.max(0, text.length() - 2) + 2 * text.length()];
+        int count = 0;
+        for (int i = 0; i + 2 < text.length(); i++) {
+            keys[count++] = trigram(text.charAt(i), text.charAt(i + 1), text.charAt(i + 2));
+        }
+        for (int i = 0; i < text.length(); i++) {
+            boolean wordStart = Character.isLetterOrDigit(text.charAt(i))
+                    && (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)));
+            if (wordStart) {
+                keys[count++] = PREFIX_1 | text.charAt(i);
+                if (i + 1 < text.length() && Character.isLetterOrDigit(text.charAt(i + 1))) {
+                    keys[count++] = PREFIX_2 | ((long) text.charAt(i) << 16) | text.charAt(i + 1);
+                }
+            }
+        }
+        Arrays.sort(keys, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || keys[unique - 1] != keys[i]) {
+                keys[unique++] = keys[i];
+            }
+        }
+        return Arrays.copyOf(keys, unique);
+    }
+
+    private static long[] trigrams(String query) {
+        long[] keys = new long[query.length() - 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = trigram(query.charAt(i), query.charAt(i + 1), query.charAt(i + 2));
+        }
+        return keys;
+    }
+
+    private static long trigram(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    private static long prefixKey(String prefix) {
+        return prefix.length() == 1
+                ? PREFIX_1 | prefix.charAt(0)
+                : PREFIX_2 | ((long) prefix.charAt(0) << 16) | prefix.charAt(1);
+    }
+
+    private static boolean isWord(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isLetterOrDigit(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String textOf(PasswordEntry entry) {
+        return normalize(entry.getService()) + FIELD_SEPARATOR + normalize(entry.getUsername())
+                + FIELD_SEPARATOR + normalize(entry.getNotes());
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Возрастающий список номеров документов.
+     */
+    private static final class Postings {
+
+        private int[] docs = new int[4];
+        private int size;
+
+        void add(int doc) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+    }
+
+    /**
+     * Таблица с открытой адресацией от ключа к списку без упаковки ключей в {@code Long}.
+     */
+    private static final class PostingsMap {
+
+        private long[] keys = new long[1024];
+        private Postings[] values = new Postings[1024];
+        private int size;
+
+        Postings get(long key) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            return null;
+        }
+
+        Postings getOrCreate(long key) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            for (; values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            Postings created = new Postings();
+            keys[slot] = key;
+            values[slot] = created;
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+            return created;
+        }
+
+        void clear() {
+            keys = new long[1024];
+            values = new Postings[1024];
+            size = 0;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            Postings[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Postings[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    int slot = hash(oldKeys[i]) & mask;
+                    while (values[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.passmanager.model;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Итог проверки надёжности всех паролей хранилища.
+ * Сами пароли в отчёт не попадают.
+ *
+ * @param total     сколько записей проверено
+ * @param histogram число записей на каждом уровне надёжности
+ * @param weakest   самые слабые записи, начиная со слабейшей
+ */
+public record StrengthReport(long total, Map<PasswordStrength, Long> histogram, List<WeakEntry> weakest) {
+
+    public StrengthReport {
+        Map<PasswordStrength, Long> copy = new EnumMap<>(PasswordStrength.class);
+        copy.putAll(histogram);
+        histogram = Collections.unmodifiableMap(copy);
+        weakest = List.copyOf(weakest);
+    }
+
+    public long count(PasswordStrength strength) {
+        return histogram.getOrDefault(strength, 0L);
+    }
+
+    /**
+     * Слабая запись без пароля: достаточно, чтобы найти её в хранилище.
+     *
+     * @param entropy оценка энтропии пароля в битах
+     */
+    public record WeakEntry(String id, String service, String username, PasswordStrength strength, double entropy) {
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.passmanager.service;
+
+import com.example.passmanager.model.PasswordEntry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Проверка паролей по локальной базе утечек без обращения к сети.
+ * <p>
+ * База — текстовый файл в формате Have I Been Pwned, упорядоченный по хешу: строки {@code SHA1:число},
+ * где SHA-1 записан 40 шестнадцатеричными символами. Файл отображается в память и не читается в кучу,
+ * поэтому размер базы ограничен только диском. Хеши распределены равномерно, и строка ищется
+ * интерполяцией по смещению в файле: проверка пароля читает несколько страниц независимо от размера базы.
+ */
+public final class BreachedPasswords implements Closeable {
+
+    /**
+     * Файл отображается частями: один {@link MappedByteBuffer} ограничен 2 ГБ.
+     */
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final int HASH_LENGTH = 20;
+    private static final int HEX_LENGTH = HASH_LENGTH * 2;
+    /**
+     * Участок такого размера проще просмотреть подряд: он уже занимает одну-две страницы.
+     */
+    private static final int SCAN_LIMIT = 4096;
+    /**
+     * Каждая такая проба делит участок пополам: если хеши в файле распределены неравномерно,
+     * интерполяция не вырождается в линейный поиск.
+     */
+    private static final int BISECT_EVERY = 3;
+
+    private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 недоступен", e);
+        }
+    });
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long size;
+
+    private BreachedPasswords(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        int segmentCount = (int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        this.segments = new MappedByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long start = (long) i << SEGMENT_SHIFT;
+            long length = Math.min(1L << SEGMENT_SHIFT, size - start);
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        }
+        if (size > 0 && !isHashLine(0)) {
+            throw new IOException("Файл не похож на базу утечек: строки должны начинаться с SHA-1");
+        }
+    }
+
+    /**
+     * Отображает базу утечек в память. Файл не изменяется, пока открыт.
+     */
+    public static BreachedPasswords open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new BreachedPasswords(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Сколько раз пароль встречался в утечках.
+     *
+     * @return {@code 0}, если пароля нет в базе
+     */
+    public long count(String password) {
+        if (password == null || password.isEmpty()) {
+            return 0;
+        }
+        return count(sha1(password));
+    }
+
+    /**
+     * Проверяет пароли всех записей и возвращает id найденных в базе с числом утечек.
+     * Хеши считаются параллельно, а ищутся в порядке возрастания: каждый следующий поиск начинается
+     * с места предыдущего, и файл читается один раз от начала к концу.
+     * Пароли, расшифрованные ради проверки, сразу забываются.
+     */
+    public Map<String, Long> scan(List<PasswordEntry> entries) {
+        CryptoPipeline pipeline = CryptoPipeline.shared();
+        Hashed[] hashed = pipeline.map(entries, entry -> entry == null ? null : hash(entry)).stream()
+                .filter(Objects::nonNull)
+                .toArray(Hashed[]::new);
+        pipeline.sort(hashed, Comparator.comparing(Hashed::hash, Arrays::compareUnsigned));
+        Map<String, Long> breached = new LinkedHashMap<>();
+        long from = 0;
+        long fromKey = 0;
+        for (Hashed entry : hashed) {
+            long line = find(entry.hash(), from, fromKey, size);
+            if (line >= 0) {
+                breached.put(entry.id(), countAt(line));
+                from = line;
+            } else {
+                from = -line - 1;
+            }
+            fromKey = prefix(entry.hash());
+        }
+        return Collections.unmodifiableMap(breached);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static Hashed hash(PasswordEntry entry) {
+        String password = entry.getPassword();
+        entry.evictPlaintext();
+        return password == null || password.isEmpty() ? null : new Hashed(entry.getId(), sha1(password));
+    }
+
+    private static byte[] sha1(String password) {
+        return SHA1.get().digest(password.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long count(byte[] hash) {
+        long line = find(hash, 0, 0, size);
+        return line >= 0 ? countAt(line) : 0;
+    }
+
+    /**
+     * Ищет строку с хешем на участке {@code [low, high)}, границы которого — начала строк.
+     * Хеши строк участка не меньше {@code lowKey} (первых 64 бит хеша).
+     *
+     * @return начало найденной строки или {@code -(p + 1)}, где {@code p} — начало первой строки с большим хешем
+     */
+    private long find(byte[] hash, long low, long lowKey, long high) {
+        long target = prefix(hash);
+        long highKey = -1L;
+        int probes = 0;
+        while (high - low > SCAN_LIMIT) {
+            long position;
+            if (++probes % BISECT_EVERY == 0) {
+                position = low + ((high - low) >>> 1);
+            } else {
+                double fraction = unsigned(target - lowKey) / unsigned(highKey - lowKey);
+                position = low + (long) (fraction * (high - low));
+            }
+            long line = lineStart(Math.max(low, Math.min(high - 1, position)), low);
+            int cmp = compareLine(line, hash);
+            if (cmp == 0) {
+                return line;
+            }
+            if (cmp < 0) {
+                low = nextLine(line, high);
+                lowKey = keyAt(line);
+            } else {
+                high = line;
+                highKey = keyAt(line);
+            }
+        }
+        for (long line = low; line < high; line = nextLine(line, high)) {
+            int cmp = compareLine(line, hash);
+            if (cmp == 0) {
+                return line;
+            }
+            if (cmp > 0) {
+                return -line - 1;
+            }
+        }
+        return -high - 1;
+    }
+
+    private static double unsigned(long value) {
+        double result = (double) (value >>> 1) * 2;
+        return result + (value & 1);
+    }
+
+    private static long prefix(byte[] hash) {
+        long prefix = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            prefix = (prefix << 8) | (hash[i] & 0xFF);
+        }
+        return prefix;
+    }
+
+    /**
+     * Первые 64 бита хеша строки.
+     */
+    private long keyAt(long line) {
+        if (line + HEX_LENGTH > size) {
+            return -1L;
+        }
+        long key = 0;
+        for (int i = 0; i < Long.BYTES * 2; i++) {
+            key = (key << 4) | hexDigit(byteAt(line + i));
+        }
+        return key;
+    }
+
+    private int compareLine(long line, byte[] hash) {
+        if (line + HEX_LENGTH > size) {
+            // Оборванная последняя строка
+            return 1;
+        }
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            int value = (hexDigit(byteAt(line + 2L * i)) << 4) | hexDigit(byteAt(line + 2L * i + 1));
+            int cmp = Integer.compare(value, hash[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    private long countAt(long line) {
+        long position = line + HEX_LENGTH;
+        if (position >= size || byteAt(position) != ':') {
+            return 1;
+        }
+        long count = 0;
+        for (position++; position < size; position++) {
+            byte b = byteAt(position);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            count = count * 10 + (b - '0');
+        }
+        return Math.max(1, count);
+    }
+
+    private boolean isHashLine(long line) {
+        if (line + HEX_LENGTH > size) {
+            return false;
+        }
+        for (int i = 0; i < HEX_LENGTH; i++) {
+            if (hexDigit(byteAt(line + i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Начало строки, в которой лежит байт {@code position}, но не раньше {@code low}.
+     */
+    private long lineStart(long position, long low) {
+        while (position > low && byteAt(position - 1) != '\n') {
+            position--;
+        }
+        return position;
+    }
+
+    private long nextLine(long line, long high) {
+        long position = line;
+        while (position < high && byteAt(position) != '\n') {
+            position++;
+        }
+        return Math.min(high, position + 1);
+    }
+
+    private byte byteAt(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & SEGMENT_MASK));
+    }
+
+    private static int hexDigit(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        return -1;
+    }
+
+    private record Hashed(String id, byte[] hash) {
+    }
+}
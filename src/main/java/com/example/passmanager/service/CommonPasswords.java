@@ -0,0 +1,255 @@
+package com.example.passmanager.service;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Словарь самых распространённых паролей в виде фильтра Блума (128 КБ на 10 000 слов).
+ * Слова хранятся только как биты фильтра, поэтому проверка может дать ложное совпадение,
+ * но никогда не пропустит слово из словаря. Кроме слов в фильтре лежат их начала
+ * длины {@value #MIN_LENGTH}: по ним оценка отбрасывает подстроки, с которых не начинается ни одно слово,
+ * не проверяя их продолжения. Для каждого слова известна граница ранга: топ-100, топ-1000 и т.д.
+ * Фильтр читается из ресурса при первом обращении.
+ * <p>
+ * Ресурс собирается из списка паролей, упорядоченного по частоте (по одному на строку):
+ * {@code java -cp target/classes com.example.passmanager.service.CommonPasswords passwords.txt common-passwords.bin}
+ */
+final class CommonPasswords {
+
+    /**
+     * Начальное значение хеша пустой строки; символы добавляются через {@link #hash(long, char)}.
+     */
+    static final long EMPTY_HASH = 0xcbf29ce484222325L;
+
+    private static final String RESOURCE = "common-passwords.bin";
+    private static final int MAGIC = 0x504d4246; // "PMBF"
+    private static final int VERSION = 1;
+    private static final int[] TIERS = {100, 1_000, 10_000};
+    private static final int MIN_LENGTH = 4;
+    private static final int MAX_LENGTH = 32;
+    private static final double FALSE_POSITIVE_RATE = 1e-8;
+    private static final int PREFIX_KEY = -1;
+
+    private final int[] tiers;
+    private final int hashCount;
+    private final int minLength;
+    private final int maxLength;
+    private final long bitMask;
+    private final long[] bits;
+
+    private CommonPasswords(int[] tiers, int hashCount, int minLength, int maxLength, long[] bits) {
+        this.tiers = tiers;
+        this.hashCount = hashCount;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.bits = bits;
+        this.bitMask = (long) bits.length * Long.SIZE - 1;
+    }
+
+    /**
+     * Встроенный словарь. Если ресурс не удалось прочитать, словарь пуст.
+     */
+    static CommonPasswords get() {
+        return Holder.INSTANCE;
+    }
+
+    int minLength() {
+        return minLength;
+    }
+
+    int maxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Добавляет к хешу следующий символ слова (FNV-1a). Слова хешируются в нижнем регистре.
+     */
+    static long hash(long hash, char c) {
+        return (hash ^ c) * 0x100000001b3L;
+    }
+
+    /**
+     * Есть ли в словаре слово, которое начинается с данных {@link #minLength()} символов.
+     */
+    boolean hasPrefix(long prefixHash) {
+        return contains(prefixHash, PREFIX_KEY);
+    }
+
+    /**
+     * Граница ранга слова с данным хешем: 100 для самых частых паролей, затем 1000 и т.д.
+     *
+     * @return {@code 0}, если слова нет в словаре
+     */
+    int rank(long wordHash) {
+        for (int tier = 0; tier < tiers.length; tier++) {
+            if (contains(wordHash, tier)) {
+                return tiers[tier];
+            }
+        }
+        return 0;
+    }
+
+    private boolean contains(long wordHash, int tier) {
+        if (bits.length == 0) {
+            return false;
+        }
+        long mixed = mix(wordHash + (tier + 1) * 0x9E3779B97F4A7C15L);
+        long h1 = mixed >>> 32;
+        long h2 = (mixed & 0xFFFFFFFFL) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = (h1 + i * h2) & bitMask;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void add(long wordHash, int tier) {
+        long mixed = mix(wordHash + (tier + 1) * 0x9E3779B97F4A7C15L);
+        long h1 = mixed >>> 32;
+        long h2 = (mixed & 0xFFFFFFFFL) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = (h1 + i * h2) & bitMask;
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    static CommonPasswords read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Неизвестный формат словаря паролей");
+        }
+        int hashCount = data.readInt();
+        int minLength = data.readInt();
+        int maxLength = data.readInt();
+        int[] tiers = new int[data.readInt()];
+        for (int i = 0; i < tiers.length; i++) {
+            tiers[i] = data.readInt();
+        }
+        long[] bits = new long[data.readInt()];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = data.readLong();
+        }
+        return new CommonPasswords(tiers, hashCount, minLength, maxLength, bits);
+    }
+
+    private void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(hashCount);
+        data.writeInt(minLength);
+        data.writeInt(maxLength);
+        data.writeInt(tiers.length);
+        for (int tier : tiers) {
+            data.writeInt(tier);
+        }
+        data.writeInt(bits.length);
+        for (long word : bits) {
+            data.writeLong(word);
+        }
+        data.flush();
+    }
+
+    /**
+     * Строит фильтр по списку паролей, упорядоченному от самого частого.
+     * Слова короче {@value #MIN_LENGTH} или длиннее {@value #MAX_LENGTH} символов пропускаются.
+     */
+    static CommonPasswords build(List<String> rankedWords) {
+        Set<String> words = new LinkedHashSet<>();
+        int limit = TIERS[TIERS.length - 1];
+        for (String word : rankedWords) {
+            String normalized = word.strip().toLowerCase(Locale.ROOT);
+            if (normalized.length() >= MIN_LENGTH && normalized.length() <= MAX_LENGTH) {
+                words.add(normalized);
+                if (words.size() == limit) {
+                    break;
+                }
+            }
+        }
+        Set<String> prefixes = new LinkedHashSet<>();
+        for (String word : words) {
+            prefixes.add(word.substring(0, MIN_LENGTH));
+        }
+        int count = Math.max(1, words.size() + prefixes.size());
+        // Размер — степень двойки, чтобы номер бита получался маской, а не делением
+        long bitCount = Long.highestOneBit(
+                (long) Math.ceil(-count * Math.log(FALSE_POSITIVE_RATE) / (Math.log(2) * Math.log(2))) - 1) << 1;
+        bitCount = Math.max(Long.SIZE, bitCount);
+        int hashCount = (int) Math.round((double) bitCount / count * Math.log(2));
+        int maxLength = 0;
+        CommonPasswords filter = new CommonPasswords(TIERS.clone(), hashCount, MIN_LENGTH, MAX_LENGTH,
+                new long[(int) ((bitCount + Long.SIZE - 1) / Long.SIZE)]);
+        int rank = 0;
+        int tier = 0;
+        for (String word : words) {
+            if (++rank > TIERS[tier]) {
+                tier++;
+            }
+            long hash = EMPTY_HASH;
+            for (int i = 0; i < word.length(); i++) {
+                hash = hash(hash, word.charAt(i));
+            }
+            filter.add(hash, tier);
+            maxLength = Math.max(maxLength, word.length());
+        }
+        for (String prefix : prefixes) {
+            long hash = EMPTY_HASH;
+            for (int i = 0; i < prefix.length(); i++) {
+                hash = hash(hash, prefix.charAt(i));
+            }
+            filter.add(hash, PREFIX_KEY);
+        }
+        return new CommonPasswords(filter.tiers, hashCount, MIN_LENGTH, maxLength, filter.bits);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Использование: CommonPasswords <список паролей> <файл словаря>");
+            return;
+        }
+        CommonPasswords filter = build(Files.readAllLines(Path.of(args[0]), StandardCharsets.UTF_8));
+        try (OutputStream out = Files.newOutputStream(Path.of(args[1]))) {
+            filter.write(out);
+        }
+    }
+
+    private static final class Holder {
+
+        private static final CommonPasswords INSTANCE = load();
+
+        private static CommonPasswords load() {
+            try (InputStream in = CommonPasswords.class.getResourceAsStream(RESOURCE)) {
+                if (in == null) {
+                    System.err.println("Словарь распространённых паролей не найден");
+                } else {
+                    return read(new BufferedInputStream(in));
+                }
+            } catch (IOException e) {
+                System.err.println("Ошибка чтения словаря паролей: " + e.getMessage());
+            }
+            return new CommonPasswords(new int[0], 0, MIN_LENGTH, 0, new long[0]);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.passmanager.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Параллельная стадия для массовых операций: шифрование и расшифровка при чтении и записи хранилища,
+ * аудит надёжности, проверка по базе утечек и генерация партий паролей.
+ * Делит работу на блоки и обрабатывает их в собственном пуле потоков; результат возвращается в исходном порядке.
+ * Все операции делят общий экземпляр {@link #shared()}, поэтому число потоков задаётся в одном месте
+ * и не конкурирует с общим пулом {@link ForkJoinPool#commonPool()}.
+ */
+final class CryptoPipeline {
+
+    private static final int CHUNK_SIZE = 512;
+    /**
+     * Меньше элементов обрабатывается в текущем потоке: разбиение на задачи стоит дороже самой работы.
+     * Это два блока — минимум, при котором второму потоку вообще есть что делать.
+     */
+    static final int PARALLEL_THRESHOLD = 2 * CHUNK_SIZE;
+    private static final CryptoPipeline SHARED = new CryptoPipeline(Runtime.getRuntime().availableProcessors());
+
+    private volatile int parallelism;
+    /**
+     * Текущий пул; {@code null}, если обработка последовательная. Защищён блокировкой объекта.
+     */
+    private Workers workers;
+
+    CryptoPipeline(int parallelism) {
+        setParallelism(parallelism);
+    }
+
+    /**
+     * Общий экземпляр, в котором выполняются все массовые операции приложения.
+     */
+    static CryptoPipeline shared() {
+        return SHARED;
+    }
+
+    int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Задаёт число потоков. Значение 1 отключает параллельную обработку.
+     * Обработка, уже начатая на прежнем пуле, доводится на нём до конца: пул закрывается после неё.
+     */
+    synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Уровень параллелизма должен быть положительным: " + parallelism);
+        }
+        Workers previous = workers;
+        this.parallelism = parallelism;
+        this.workers = parallelism > 1 ? new Workers(new ForkJoinPool(parallelism)) : null;
+        if (previous != null) {
+            previous.retired = true;
+            previous.shutdownIfIdle();
+        }
+    }
+
+    /**
+     * Применяет функцию к каждому элементу; порядок результатов совпадает с порядком элементов.
+     */
+    <T, R> List<R> map(List<T> items, Function<? super T, ? extends R> mapper) {
+        Object[] results = new Object[items.size()];
+        forEachChunk(items.size(), (from, to) -> {
+            for (int i = from; i < to; i++) {
+                results[i] = mapper.apply(items.get(i));
+            }
+        });
+        @SuppressWarnings("unchecked")
+        List<R> list = (List<R>) Arrays.asList(results);
+        return list;
+    }
+
+    /**
+     * Сворачивает элементы: каждый блок накапливается в своём контейнере, затем контейнеры объединяются по порядку.
+     */
+    <T, A> A reduce(List<T> items, Supplier<A> supplier, BiConsumer<A, ? super T> accumulator,
+                    BiConsumer<A, A> combiner) {
+        int chunks = (items.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        Object[] partial = new Object[chunks];
+        forEachChunk(items.size(), (from, to) -> {
+            A container = supplier.get();
+            for (int i = from; i < to; i++) {
+                accumulator.accept(container, items.get(i));
+            }
+            partial[from / CHUNK_SIZE] = container;
+        });
+        A result = supplier.get();
+        for (Object container : partial) {
+            @SuppressWarnings("unchecked")
+            A typed = (A) container;
+            combiner.accept(result, typed);
+        }
+        return result;
+    }
+
+    /**
+     * Сортирует массив; большой массив сортируется {@link Arrays#parallelSort} в пуле этого экземпляра.
+     */
+    <T> void sort(T[] items, Comparator<? super T> comparator) {
+        Workers current = items.length < PARALLEL_THRESHOLD ? null : acquire();
+        if (current == null) {
+            Arrays.sort(items, comparator);
+            return;
+        }
+        try {
+            // Подзадачи сортировки, запущенной из потока пула, выполняются в этом же пуле
+            await(List.of(current.pool.submit(() -> Arrays.parallelSort(items, comparator))));
+        } finally {
+            release(current);
+        }
+    }
+
+    /**
+     * Вызывает {@code action} для блоков {@code [from, to)}, покрывающих {@code [0, size)}.
+     * Блоки начинаются с кратных {@value #CHUNK_SIZE} и выполняются параллельно, если элементов не меньше
+     * {@link #PARALLEL_THRESHOLD}.
+     */
+    void forEachChunk(int size, ChunkAction action) {
+        Workers current = size < PARALLEL_THRESHOLD ? null : acquire();
+        if (current == null) {
+            for (int start = 0; start < size; start += CHUNK_SIZE) {
+                action.run(start, Math.min(size, start + CHUNK_SIZE));
+            }
+            return;
+        }
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>((size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+            for (int start = 0; start < size; start += CHUNK_SIZE) {
+                int from = start;
+                int to = Math.min(size, start + CHUNK_SIZE);
+                tasks.add(() -> {
+                    action.run(from, to);
+                    return null;
+                });
+            }
+            await(current.pool.invokeAll(tasks));
+        } finally {
+            release(current);
+        }
+    }
+
+    private static void await(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Обработка прервана", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    private synchronized Workers acquire() {
+        if (workers != null) {
+            workers.users++;
+        }
+        return workers;
+    }
+
+    private synchronized void release(Workers used) {
+        used.users--;
+        used.shutdownIfIdle();
+    }
+
+    /**
+     * Обработка одного блока элементов с номерами {@code [from, to)}.
+     */
+    @FunctionalInterface
+    interface ChunkAction {
+        void run(int from, int to);
+    }
+
+    /**
+     * Пул и число обработок, которые сейчас на нём выполняются. Поля меняются под блокировкой {@link CryptoPipeline}.
+     */
+    private static final class Workers {
+
+        private final ForkJoinPool pool;
+        private int users;
+        private boolean retired;
+
+        Workers(ForkJoinPool pool) {
+            this.pool = pool;
+        }
+
+        void shutdownIfIdle() {
+            if (retired && users == 0) {
+                pool.shutdown();
+            }
+        }
+    }
+}
@@ -1,46 +1,81 @@
 package com.example.passmanager.service;
 
 import javax.crypto.Cipher;
-import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Сервис для шифрования и расшифровки паролей.
+ * <p>
+ * Каждый пароль шифруется AES-GCM собственным случайным ключом, а тот хранится рядом, зашифрованный (AES Key Wrap)
+ * текущим поколением ключа хранилища ({@link KeyRing}). Смена ключа хранилища перешифровывает только эти
+ * 40 байт, сами пароли не расшифровываются.
+ * <pre>
+ * v2:Base64(поколение i32 | ключ записи (40) | nonce (12) | шифротекст | тег)
+ * </pre>
+ * Значения формата {@code v1:} (AES-GCM прямо ключом хранилища) и старые значения без префикса (AES/ECB)
+ * по-прежнему читаются: они зашифрованы поколением {@code 0}.
  */
 public final class EncryptionService {
 
     private static final String ALGORITHM = "AES";
-    private static final int KEY_SIZE = 256;
-    private static final String KEY_FILE_NAME = "master.key";
+    private static final String GCM_TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String WRAP_TRANSFORMATION = "AESWrap";
+    private static final String LEGACY_TRANSFORMATION = "AES/ECB/PKCS5Padding";
+    private static final int DATA_KEY_LENGTH = 32;
+    private static final int WRAPPED_KEY_LENGTH = DATA_KEY_LENGTH + 8;
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+    private static final int HEADER_LENGTH = Integer.BYTES + WRAPPED_KEY_LENGTH;
 
-    private final SecretKey secretKey;
+    /**
+     * Префиксы форматов. В Base64 нет двоеточия, поэтому старые значения их не содержат.
+     */
+    private static final String V1_PREFIX = "v1:";
+    private static final String V2_PREFIX = "v2:";
+    private static final byte V1_VERSION = 1;
+    private static final byte V2_VERSION = 2;
+    private static final String FINGERPRINT_ALGORITHM = "HmacSHA256";
+    private static final int FINGERPRINT_LENGTH = 16;
 
-    public EncryptionService(Path baseDir) {
-        this.secretKey = loadOrGenerateKey(baseDir);
+    private final VaultKey vaultKey;
+    private final SecretKey fingerprintKey;
+    // Все поколения, встреченные за сеанс: записи в памяти могут ссылаться и на уже выведенные из набора
+    private final Map<Integer, SecretKey> keys = new ConcurrentHashMap<>();
+
+    // Cipher не потокобезопасен, поэтому экземпляры переиспользуются в пределах потока
+    private final ThreadLocal<Cipher> gcmCipher = ThreadLocal.withInitial(() -> newCipher(GCM_TRANSFORMATION));
+    private final ThreadLocal<Cipher> wrapCipher = ThreadLocal.withInitial(() -> newCipher(WRAP_TRANSFORMATION));
+    private final ThreadLocal<Cipher> legacyCipher = ThreadLocal.withInitial(() -> newCipher(LEGACY_TRANSFORMATION));
+    private final ThreadLocal<SecureRandom> random = ThreadLocal.withInitial(SecureRandom::new);
+    private final ThreadLocal<Mac> fingerprintMac = ThreadLocal.withInitial(this::newFingerprintMac);
+
+    /**
+     * @param vaultKey хранилище, открытое мастер-паролем; смена поколений в нём подхватывается сразу
+     */
+    public EncryptionService(VaultKey vaultKey) {
+        this.vaultKey = vaultKey;
+        KeyRing keyRing = vaultKey.keyRing();
+        this.keys.putAll(keyRing.keys());
+        // Отдельный ключ для отпечатков, чтобы ключи шифрования не использовались в двух ролях
+        this.fingerprintKey = keyRing.fingerprintKey();
     }
 
-    private SecretKey loadOrGenerateKey(Path baseDir) {
-        Path keyFile = baseDir.resolve(KEY_FILE_NAME);
+    private static Cipher newCipher(String transformation) {
         try {
-            if (Files.exists(keyFile)) {
-                byte[] keyBytes = Files.readAllBytes(keyFile);
-                return new SecretKeySpec(keyBytes, ALGORITHM);
-            } else {
-                KeyGenerator keyGenerator = KeyGenerator.getInstance(ALGORITHM);
-                keyGenerator.init(KEY_SIZE, new SecureRandom());
-                SecretKey key = keyGenerator.generateKey();
-                Files.createDirectories(baseDir);
-                Files.write(keyFile, key.getEncoded());
-                return key;
-            }
-        } catch (Exception e) {
-            throw new RuntimeException("Не удалось инициализировать ключ шифрования", e);
+            return Cipher.getInstance(transformation);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Алгоритм недоступен: " + transformation, e);
         }
     }
 
@@ -48,13 +83,26 @@ public final class EncryptionService {
         if (plainText == null || plainText.isEmpty()) {
             return plainText;
         }
+        KeyRing keyRing = vaultKey.keyRing();
+        byte[] dataKey = new byte[DATA_KEY_LENGTH];
         try {
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-            byte[] encryptedBytes = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(encryptedBytes);
+            byte[] plainBytes = plainText.getBytes(StandardCharsets.UTF_8);
+            random.get().nextBytes(dataKey);
+            SecretKeySpec dataKeySpec = new SecretKeySpec(dataKey, ALGORITHM);
+            byte[] output = new byte[HEADER_LENGTH + NONCE_LENGTH + plainBytes.length + TAG_LENGTH_BITS / 8];
+            writeHeader(output, keyRing.current(), wrap(keyRing.currentKey(), dataKeySpec));
+
+            byte[] nonce = new byte[NONCE_LENGTH];
+            random.get().nextBytes(nonce);
+            System.arraycopy(nonce, 0, output, HEADER_LENGTH, NONCE_LENGTH);
+            Cipher cipher = gcmCipher.get();
+            cipher.init(Cipher.ENCRYPT_MODE, dataKeySpec, new GCMParameterSpec(TAG_LENGTH_BITS, nonce));
+            cipher.doFinal(plainBytes, 0, plainBytes.length, output, HEADER_LENGTH + NONCE_LENGTH);
+            return V2_PREFIX + Base64.getEncoder().encodeToString(output);
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при шифровании", e);
+        } finally {
+            Arrays.fill(dataKey, (byte) 0);
         }
     }
 
@@ -63,14 +111,172 @@ public final class EncryptionService {
             return encryptedText;
         }
         try {
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey);
-            byte[] decryptedBytes = cipher.doFinal(Base64.getDecoder().decode(encryptedText));
-            return new String(decryptedBytes, StandardCharsets.UTF_8);
+            if (encryptedText.startsWith(V1_PREFIX)) {
+                byte[] input = Base64.getDecoder().decode(encryptedText.substring(V1_PREFIX.length()));
+                return decryptGcm(key(0), input, 0);
+            }
+            if (!encryptedText.startsWith(V2_PREFIX)) {
+                return decryptLegacy(encryptedText);
+            }
+            byte[] input = Base64.getDecoder().decode(encryptedText.substring(V2_PREFIX.length()));
+            SecretKey dataKey = unwrap(key(generationOf(input)), input);
+            return decryptGcm(dataKey, input, HEADER_LENGTH);
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при расшифровке", e);
         }
     }
-}
 
+    /**
+     * Проверяет, записано ли значение в формате с AES-GCM. Остальные значения нужно перешифровать при сохранении.
+     */
+    public boolean isCurrentFormat(String encryptedText) {
+        return encryptedText != null && (encryptedText.startsWith(V2_PREFIX) || encryptedText.startsWith(V1_PREFIX));
+    }
 
+    /**
+     * Переводит шифротекст на текущее поколение ключа хранилища. У значений {@code v2:} перешифровывается только
+     * ключ записи; значения {@code v1:} после первой смены ключа расшифровываются и шифруются заново.
+     * Значение текущего поколения возвращается как есть.
+     */
+    public String rewrap(String encryptedText) {
+        if (encryptedText == null || encryptedText.isEmpty()) {
+            return encryptedText;
+        }
+        KeyRing keyRing = vaultKey.keyRing();
+        if (encryptedText.startsWith(V1_PREFIX)) {
+            return keyRing.current() == 0 ? encryptedText : encrypt(decrypt(encryptedText));
+        }
+        if (!encryptedText.startsWith(V2_PREFIX)) {
+            return encryptedText;
+        }
+        byte[] input = Base64.getDecoder().decode(encryptedText.substring(V2_PREFIX.length()));
+        int generation = generationOf(input);
+        if (generation == keyRing.current()) {
+            return encryptedText;
+        }
+        try {
+            SecretKey dataKey = unwrap(key(generation), input);
+            writeHeader(input, keyRing.current(), wrap(keyRing.currentKey(), dataKey));
+            return V2_PREFIX + Base64.getEncoder().encodeToString(input);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Ошибка при смене ключа записи", e);
+        }
+    }
+
+    /**
+     * Переводит шифротекст в сырые байты для двоичного хранилища: байт версии формата и шифротекст без Base64.
+     * Значения старого формата получают версию 0.
+     */
+    public byte[] toBinary(String encryptedText) {
+        if (encryptedText == null || encryptedText.isEmpty()) {
+            return new byte[0];
+        }
+        int version = 0;
+        String payload = encryptedText;
+        if (encryptedText.startsWith(V2_PREFIX)) {
+            version = V2_VERSION;
+            payload = encryptedText.substring(V2_PREFIX.length());
+        } else if (encryptedText.startsWith(V1_PREFIX)) {
+            version = V1_VERSION;
+            payload = encryptedText.substring(V1_PREFIX.length());
+        }
+        byte[] raw = Base64.getDecoder().decode(payload);
+        byte[] binary = new byte[raw.length + 1];
+        binary[0] = (byte) version;
+        System.arraycopy(raw, 0, binary, 1, raw.length);
+        return binary;
+    }
+
+    /**
+     * Обратное преобразование к {@link #toBinary(String)}.
+     */
+    public String fromBinary(byte[] binary) {
+        if (binary == null || binary.length == 0) {
+            return "";
+        }
+        String payload = Base64.getEncoder().encodeToString(Arrays.copyOfRange(binary, 1, binary.length));
+        return switch (binary[0]) {
+            case 0 -> payload;
+            case V1_VERSION -> V1_PREFIX + payload;
+            case V2_VERSION -> V2_PREFIX + payload;
+            default -> throw new IllegalArgumentException("Неизвестная версия формата шифротекста: " + binary[0]);
+        };
+    }
+
+    /**
+     * Отпечаток пароля для поиска повторов: HMAC-SHA256 от пароля, усечённый до 16 байт.
+     * Одинаковые пароли дают одинаковые отпечатки, но без мастер-ключа по отпечатку нельзя подобрать пароль.
+     */
+    public byte[] fingerprint(String plainText) {
+        Mac mac = fingerprintMac.get();
+        byte[] digest = mac.doFinal((plainText == null ? "" : plainText).getBytes(StandardCharsets.UTF_8));
+        return Arrays.copyOf(digest, FINGERPRINT_LENGTH);
+    }
+
+    /**
+     * Идентификатор ключа отпечатков: по нему распознаются отпечатки, посчитанные с другим мастер-ключом.
+     */
+    public byte[] fingerprintKeyId() {
+        return Arrays.copyOf(KeyRing.hmac(fingerprintKey.getEncoded(), "key-id"), Long.BYTES);
+    }
+
+    private Mac newFingerprintMac() {
+        try {
+            Mac mac = Mac.getInstance(FINGERPRINT_ALGORITHM);
+            mac.init(fingerprintKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Алгоритм недоступен: " + FINGERPRINT_ALGORITHM, e);
+        }
+    }
+
+    /**
+     * Поколение ключа хранилища. Новые поколения сначала появляются в наборе, выведенные остаются здесь.
+     */
+    private SecretKey key(int generation) throws GeneralSecurityException {
+        SecretKey key = keys.get(generation);
+        if (key == null) {
+            keys.putAll(vaultKey.keyRing().keys());
+            key = keys.get(generation);
+        }
+        if (key == null) {
+            throw new GeneralSecurityException("Нет ключа хранилища поколения " + generation);
+        }
+        return key;
+    }
+
+    private static int generationOf(byte[] input) {
+        return ByteBuffer.wrap(input, 0, Integer.BYTES).getInt();
+    }
+
+    private static void writeHeader(byte[] output, int generation, byte[] wrappedKey) {
+        ByteBuffer.wrap(output, 0, HEADER_LENGTH).putInt(generation).put(wrappedKey);
+    }
+
+    private byte[] wrap(SecretKey keyEncryptionKey, SecretKey dataKey) throws GeneralSecurityException {
+        Cipher cipher = wrapCipher.get();
+        cipher.init(Cipher.WRAP_MODE, keyEncryptionKey);
+        return cipher.wrap(dataKey);
+    }
+
+    private SecretKey unwrap(SecretKey keyEncryptionKey, byte[] input) throws GeneralSecurityException {
+        Cipher cipher = wrapCipher.get();
+        cipher.init(Cipher.UNWRAP_MODE, keyEncryptionKey);
+        byte[] wrappedKey = Arrays.copyOfRange(input, Integer.BYTES, HEADER_LENGTH);
+        return (SecretKey) cipher.unwrap(wrappedKey, ALGORITHM, Cipher.SECRET_KEY);
+    }
+
+    private String decryptGcm(SecretKey key, byte[] input, int offset) throws GeneralSecurityException {
+        Cipher cipher = gcmCipher.get();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, input, offset, NONCE_LENGTH));
+        byte[] decryptedBytes = cipher.doFinal(input, offset + NONCE_LENGTH, input.length - offset - NONCE_LENGTH);
+        return new String(decryptedBytes, StandardCharsets.UTF_8);
+    }
+
+    private String decryptLegacy(String encryptedText) throws GeneralSecurityException {
+        Cipher cipher = legacyCipher.get();
+        cipher.init(Cipher.DECRYPT_MODE, key(0));
+        byte[] decryptedBytes = cipher.doFinal(Base64.getDecoder().decode(encryptedText));
+        return new String(decryptedBytes, StandardCharsets.UTF_8);
+    }
+}
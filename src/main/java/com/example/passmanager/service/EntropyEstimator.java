@@ -0,0 +1,376 @@
+package com.example.passmanager.service;
+
+import java.util.Arrays;
+
+/**
+ * Оценка энтропии пароля в битах: сколько попыток в среднем понадобится атакующему, который перебирает
+ * сначала распространённые пароли, раскладки клавиатуры, повторы и последовательности, а потом — всё подряд.
+ * <p>
+ * Пароль разбивается на участки так, чтобы сумма их стоимости была минимальной (динамическое программирование).
+ * Участок — либо один символ, который стоит {@code log2(алфавит)} бит, где алфавит определяется классами символов
+ * всего пароля, либо найденный шаблон:
+ * <ul>
+ *     <li>слово из словаря {@link CommonPasswords}, в том числе с заглавными буквами
+ *     и заменами вида {@code p@ssw0rd};</li>
+ *     <li>проход по соседним клавишам ({@code qwerty}, {@code 1qaz}, {@code йцукен});</li>
+ *     <li>повтор предыдущего фрагмента ({@code aaaa}, {@code abcabc});</li>
+ *     <li>последовательность с шагом ±1 ({@code abcd}, {@code 9876}).</li>
+ * </ul>
+ * Пароли длиннее {@value #MAX_ANALYZED} символов оцениваются по кускам такой длины.
+ * Промежуточные массивы переиспользуются в каждом потоке, поэтому оценка не выделяет памяти.
+ */
+final class EntropyEstimator {
+
+    static final int MAX_ANALYZED = 64;
+
+    private static final double LOG2 = Math.log(2);
+    private static final int LOWER_POOL = 26;
+    private static final int UPPER_POOL = 26;
+    private static final int DIGIT_POOL = 10;
+    private static final int SYMBOL_POOL = 33;
+    private static final int CYRILLIC_POOL = 33;
+    private static final int OTHER_POOL = 100;
+
+    private static final int CLASS_LOWER = 1;
+    private static final int CLASS_UPPER = 1 << 1;
+    private static final int CLASS_DIGIT = 1 << 2;
+    private static final int CLASS_SYMBOL = 1 << 3;
+    private static final int CLASS_CYRILLIC_LOWER = 1 << 4;
+    private static final int CLASS_CYRILLIC_UPPER = 1 << 5;
+    private static final int CLASS_OTHER = 1 << 6;
+
+    /**
+     * Клавиатурные ряды в раскладках QWERTY и ЙЦУКЕН. Символы с Shift занимают те же клавиши.
+     */
+    private static final String[][] KEYBOARD_ROWS = {
+            {"`1234567890-=", "~!@#$%^&*()_+", "ё"},
+            {"qwertyuiop[]\\", "QWERTYUIOP{}|", "йцукенгшщзхъ"},
+            {"asdfghjkl;'", "ASDFGHJKL:\"", "фывапролджэ"},
+            {"zxcvbnm,./", "ZXCVBNM<>?", "ячсмитьбю"}
+    };
+    /**
+     * Смещение рядов в четвертях клавиши: ряды на клавиатуре сдвинуты друг относительно друга.
+     */
+    private static final int[] ROW_OFFSETS = {0, 6, 7, 9};
+    private static final int KEY_WIDTH = 4;
+    private static final int NO_KEY = -1;
+    private static final short[] KEY_POSITIONS = keyPositions();
+    private static final double KEYBOARD_START_BITS = log2(47);
+    private static final double KEYBOARD_TURN_BITS = log2(6);
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final CommonPasswords dictionary;
+
+    EntropyEstimator() {
+        this(null);
+    }
+
+    /**
+     * @param dictionary словарь паролей; {@code null} — встроенный, загружается при первой оценке
+     */
+    EntropyEstimator(CommonPasswords dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    double bits(String password) {
+        if (password == null || password.isEmpty()) {
+            return 0;
+        }
+        double charBits = log2(poolSize(password));
+        // Длинный пароль оценивается по кускам, чтобы время оценки росло линейно
+        double bits = 0;
+        for (int from = 0; from < password.length(); from += MAX_ANALYZED) {
+            bits += windowBits(password, from, Math.min(password.length() - from, MAX_ANALYZED), charBits);
+        }
+        return bits;
+    }
+
+    private double windowBits(String password, int from, int n, double charBits) {
+        Scratch scratch = SCRATCH.get();
+        double[] segment = scratch.segment;
+        double[] best = scratch.best;
+        int stride = MAX_ANALYZED + 1;
+        for (int i = 0; i < n; i++) {
+            Arrays.fill(segment, i * stride, i * stride + n + 1, Double.POSITIVE_INFINITY);
+        }
+
+        matchDictionary(password, from, n, segment, stride);
+        matchKeyboard(password, from, n, segment, stride);
+        matchRepeats(password, from, n, segment, stride);
+        matchSequences(password, from, n, segment, stride);
+
+        best[0] = 0;
+        for (int j = 1; j <= n; j++) {
+            double cost = best[j - 1] + charBits;
+            for (int i = 0; i < j - 1; i++) {
+                double pattern = segment[i * stride + j];
+                if (pattern != Double.POSITIVE_INFINITY && best[i] + pattern < cost) {
+                    cost = best[i] + pattern;
+                }
+            }
+            best[j] = cost;
+        }
+        return best[n];
+    }
+
+    private void matchDictionary(String password, int from, int n, double[] segment, int stride) {
+        CommonPasswords words = dictionary != null ? dictionary : CommonPasswords.get();
+        int minLength = words.minLength();
+        int maxLength = words.maxLength();
+        for (int i = 0; i + minLength <= n; i++) {
+            long plain = CommonPasswords.EMPTY_HASH;
+            long unleeted = CommonPasswords.EMPTY_HASH;
+            int upper = 0;
+            int leet = 0;
+            boolean plainPossible = true;
+            boolean unleetedPossible = true;
+            for (int j = i; j < n && j - i < maxLength; j++) {
+                char c = password.charAt(from + j);
+                char lower = Character.toLowerCase(c);
+                if (lower != c) {
+                    upper++;
+                }
+                char letter = unleet(lower);
+                if (letter != lower) {
+                    leet++;
+                }
+                plain = CommonPasswords.hash(plain, lower);
+                unleeted = CommonPasswords.hash(unleeted, letter);
+                int length = j - i + 1;
+                if (length < minLength) {
+                    continue;
+                }
+                if (length == minLength) {
+                    // Почти все подстроки случайного пароля отсекаются здесь, одной проверкой на начало
+                    plainPossible = words.hasPrefix(plain);
+                    unleetedPossible = leet > 0 && words.hasPrefix(unleeted);
+                    if (!plainPossible && !unleetedPossible) {
+                        break;
+                    }
+                }
+                int rank = plainPossible ? words.rank(plain) : 0;
+                int substitutions = 0;
+                if (rank == 0 && unleetedPossible && leet > 0) {
+                    rank = words.rank(unleeted);
+                    substitutions = leet;
+                }
+                if (rank > 0) {
+                    double cost = log2(rank) + caseBits(upper, length) + substitutions;
+                    relax(segment, i * stride + j + 1, cost);
+                }
+            }
+        }
+    }
+
+    private static void matchKeyboard(String password, int from, int n, double[] segment, int stride) {
+        // Конец прохода фиксирован, начало сдвигается влево; стоимость шагов накапливается с конца
+        for (int end = 2; end < n; end++) {
+            double steps = 0;
+            int nextDirection = NO_KEY;
+            for (int i = end - 1; i >= 0; i--) {
+                int direction = direction(password.charAt(from + i), password.charAt(from + i + 1));
+                if (direction == NO_KEY) {
+                    break;
+                }
+                // Первый шаг — выбор направления; прежний первый шаг, если он идёт в ту же сторону,
+                // становится продолжением и стоит один бит
+                if (direction == nextDirection) {
+                    steps += 1 - KEYBOARD_TURN_BITS;
+                }
+                steps += KEYBOARD_TURN_BITS;
+                nextDirection = direction;
+                if (end - i >= 2) {
+                    relax(segment, i * stride + end + 1, KEYBOARD_START_BITS + steps);
+                }
+            }
+        }
+    }
+
+    private static void matchRepeats(String password, int from, int n, double[] segment, int stride) {
+        for (int period = 1; period <= n / 2; period++) {
+            int run = 0;
+            for (int k = period; k < n; k++) {
+                run = password.charAt(from + k) == password.charAt(from + k - period) ? run + 1 : 0;
+                int end = k + 1;
+                boolean runEnds = end == n || password.charAt(from + end) != password.charAt(from + end - period);
+                if (runEnds && run >= Math.max(2, period)) {
+                    // Берём повтор целиком: его начало задано периодом, стоимость — выбор периода и длины
+                    double cost = log2(period) + log2(run) + 1;
+                    relax(segment, (end - run) * stride + end, cost);
+                }
+            }
+        }
+    }
+
+    private static void matchSequences(String password, int from, int n, double[] segment, int stride) {
+        for (int i = 0; i + 2 < n; i++) {
+            char first = password.charAt(from + i);
+            int type = sequenceClass(first);
+            if (type == 0) {
+                continue;
+            }
+            int delta = password.charAt(from + i + 1) - first;
+            if (delta != 1 && delta != -1) {
+                continue;
+            }
+            double startBits = isObviousStart(first) ? 1 : log2(poolOf(type));
+            for (int j = i + 1; j < n; j++) {
+                char c = password.charAt(from + j);
+                if (c - password.charAt(from + j - 1) != delta || sequenceClass(c) != type) {
+                    break;
+                }
+                int length = j - i + 1;
+                if (length >= 3) {
+                    relax(segment, i * stride + j + 1, startBits + log2(length) + (delta < 0 ? 1 : 0));
+                }
+            }
+        }
+    }
+
+    private static void relax(double[] segment, int index, double cost) {
+        if (cost < segment[index]) {
+            segment[index] = cost;
+        }
+    }
+
+    /**
+     * Сколько бит стоит угадать регистр букв слова: первая заглавная или все заглавные — один бит.
+     */
+    private static double caseBits(int upper, int length) {
+        if (upper == 0) {
+            return 0;
+        }
+        if (upper == 1 || upper == length) {
+            return 1;
+        }
+        return Math.min(upper, length - upper) + 1;
+    }
+
+    private static char unleet(char c) {
+        return switch (c) {
+            case '4', '@' -> 'a';
+            case '8' -> 'b';
+            case '3' -> 'e';
+            case '1', '!', '|' -> 'i';
+            case '0' -> 'o';
+            case '$', '5' -> 's';
+            case '7', '+' -> 't';
+            case '2' -> 'z';
+            default -> c;
+        };
+    }
+
+    /**
+     * Класс символа, внутри которого ищутся последовательности, или {@code 0} для прочих символов.
+     */
+    private static int sequenceClass(char c) {
+        int type = classOf(c);
+        return type == CLASS_SYMBOL || type == CLASS_OTHER ? 0 : type;
+    }
+
+    private static boolean isObviousStart(char c) {
+        return switch (c) {
+            case '0', '1', '9', 'a', 'z', 'A', 'Z', 'а', 'я', 'А', 'Я' -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Направление шага между соседними клавишами или {@link #NO_KEY}, если клавиши не соседние.
+     */
+    private static int direction(char from, char to) {
+        int a = keyPosition(from);
+        int b = keyPosition(to);
+        if (a == NO_KEY || b == NO_KEY) {
+            return NO_KEY;
+        }
+        int rows = (b >> 8) - (a >> 8);
+        int dx = (b & 0xFF) - (a & 0xFF);
+        boolean adjacent = rows == 0 ? Math.abs(dx) == KEY_WIDTH : Math.abs(rows) == 1 && Math.abs(dx) < KEY_WIDTH;
+        return adjacent ? (rows + 1) * 32 + dx + 16 : NO_KEY;
+    }
+
+    private static int keyPosition(char c) {
+        char lower = Character.toLowerCase(c);
+        return lower < KEY_POSITIONS.length ? KEY_POSITIONS[lower] : NO_KEY;
+    }
+
+    private static short[] keyPositions() {
+        short[] positions = new short['ё' + 1];
+        Arrays.fill(positions, (short) NO_KEY);
+        for (int row = 0; row < KEYBOARD_ROWS.length; row++) {
+            for (String keys : KEYBOARD_ROWS[row]) {
+                // В ЙЦУКЕН ряд цифр начинается с «ё», остальные ряды совпадают с QWERTY по позициям
+                for (int col = 0; col < keys.length(); col++) {
+                    positions[keys.charAt(col)] = (short) (row << 8 | col * KEY_WIDTH + ROW_OFFSETS[row]);
+                }
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Размер алфавита: сумма размеров всех классов символов, встречающихся в пароле.
+     */
+    private static int poolSize(String password) {
+        int classes = 0;
+        for (int i = 0; i < password.length(); i++) {
+            classes |= classOf(password.charAt(i));
+        }
+        int pool = 0;
+        for (int type = CLASS_LOWER; type <= CLASS_OTHER; type <<= 1) {
+            if ((classes & type) != 0) {
+                pool += poolOf(type);
+            }
+        }
+        return pool;
+    }
+
+    private static int classOf(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return CLASS_LOWER;
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return CLASS_UPPER;
+        }
+        if (c >= '0' && c <= '9') {
+            return CLASS_DIGIT;
+        }
+        if (c < 0x80) {
+            return CLASS_SYMBOL;
+        }
+        if (c >= 'а' && c <= 'я' || c == 'ё') {
+            return CLASS_CYRILLIC_LOWER;
+        }
+        if (c >= 'А' && c <= 'Я' || c == 'Ё') {
+            return CLASS_CYRILLIC_UPPER;
+        }
+        return CLASS_OTHER;
+    }
+
+    private static int poolOf(int type) {
+        return switch (type) {
+            case CLASS_LOWER -> LOWER_POOL;
+            case CLASS_UPPER -> UPPER_POOL;
+            case CLASS_DIGIT -> DIGIT_POOL;
+            case CLASS_SYMBOL -> SYMBOL_POOL;
+            case CLASS_CYRILLIC_LOWER, CLASS_CYRILLIC_UPPER -> CYRILLIC_POOL;
+            default -> OTHER_POOL;
+        };
+    }
+
+    private static double log2(double value) {
+        return Math.log(value) / LOG2;
+    }
+
+    /**
+     * Рабочие массивы одного потока: стоимость найденных шаблонов для каждой пары (начало, конец)
+     * и лучшая стоимость каждого префикса.
+     */
+    private static final class Scratch {
+
+        private final double[] segment = new double[MAX_ANALYZED * (MAX_ANALYZED + 1)];
+        private final double[] best = new double[MAX_ANALYZED + 1];
+    }
+}
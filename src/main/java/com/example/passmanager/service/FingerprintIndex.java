@@ -0,0 +1,266 @@
+package com.example.passmanager.service;
+
+import com.example.passmanager.model.PasswordEntry;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Отпечатки паролей ({@link EncryptionService#fingerprint(String)}) по id записи.
+ * По ним повторно используемые пароли находятся за один проход без расшифровки и попарного сравнения.
+ * <p>
+ * Индекс хранится в файле рядом с хранилищем: заголовок с идентификатором ключа и последовательность
+ * записей «добавить»/«удалить», которые дописываются в конец при сбросе изменений.
+ * При записи снимка хранилища файл переписывается целиком. Файл, посчитанный с другим ключом
+ * или повреждённый, отбрасывается — недостающие отпечатки считаются заново.
+ */
+final class FingerprintIndex implements Closeable {
+
+    private static final int MAGIC = 0x504d4649; // "PMFI"
+    private static final int VERSION = 1;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final int FINGERPRINT_LENGTH = 16;
+
+    private final Path file;
+    private final byte[] keyId;
+    private final Map<String, Fingerprint> byId = new HashMap<>();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final DataOutputStream pendingOut = new DataOutputStream(pending);
+    private FileChannel channel;
+    private boolean loaded;
+    private boolean rewriteNeeded;
+
+    FingerprintIndex(Path file, byte[] keyId) {
+        this.file = file;
+        this.keyId = keyId.clone();
+    }
+
+    synchronized void put(String id, byte[] fingerprint) {
+        load();
+        Fingerprint value = Fingerprint.of(fingerprint);
+        if (value.equals(byId.put(id, value))) {
+            return;
+        }
+        try {
+            pendingOut.writeByte(OP_PUT);
+            pendingOut.writeUTF(id);
+            pendingOut.write(fingerprint, 0, FINGERPRINT_LENGTH);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    synchronized void remove(String id) {
+        load();
+        if (byId.remove(id) == null) {
+            return;
+        }
+        try {
+            pendingOut.writeByte(OP_REMOVE);
+            pendingOut.writeUTF(id);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Забывает отпечатки записей, которых нет в наборе. Файл переписывается при следующем {@link #flush()}.
+     */
+    synchronized void retainOnly(Set<String> ids) {
+        load();
+        if (byId.keySet().retainAll(ids)) {
+            pending.reset();
+            rewriteNeeded = true;
+        }
+    }
+
+    /**
+     * Записи, для которых ещё нет отпечатка.
+     */
+    synchronized List<PasswordEntry> missing(Collection<PasswordEntry> entries) {
+        load();
+        List<PasswordEntry> missing = new ArrayList<>();
+        for (PasswordEntry entry : entries) {
+            if (entry != null && !byId.containsKey(entry.getId())) {
+                missing.add(entry);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Группы id записей с одинаковым паролем, по одной на каждый повторяющийся пароль.
+     * Учитываются только перечисленные записи; записи без отпечатка пропускаются.
+     */
+    synchronized List<List<String>> reuseGroups(Collection<String> ids) {
+        load();
+        Map<Fingerprint, List<String>> groups = new HashMap<>();
+        for (String id : ids) {
+            Fingerprint fingerprint = byId.get(id);
+            if (fingerprint != null) {
+                groups.computeIfAbsent(fingerprint, key -> new ArrayList<>(2)).add(id);
+            }
+        }
+        List<List<String>> reused = new ArrayList<>();
+        for (List<String> group : groups.values()) {
+            if (group.size() > 1) {
+                reused.add(group);
+            }
+        }
+        return reused;
+    }
+
+    /**
+     * Дописывает накопленные изменения в файл или переписывает его целиком после {@link #retainOnly}.
+     */
+    synchronized void flush() throws IOException {
+        if (rewriteNeeded) {
+            rewrite();
+            return;
+        }
+        if (pending.size() == 0) {
+            return;
+        }
+        if (channel == null) {
+            if (!Files.exists(file)) {
+                rewrite();
+                return;
+            }
+            channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        pendingOut.flush();
+        ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        pending.reset();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    private void rewrite() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        ByteArrayOutputStream content = new ByteArrayOutputStream(byId.size() * 40 + 16);
+        DataOutputStream out = new DataOutputStream(content);
+        writeHeader(out);
+        for (Map.Entry<String, Fingerprint> entry : byId.entrySet()) {
+            out.writeByte(OP_PUT);
+            out.writeUTF(entry.getKey());
+            entry.getValue().writeTo(out);
+        }
+        out.flush();
+        VaultSnapshots.writeAtomically(file, content.toByteArray());
+        pending.reset();
+        rewriteNeeded = false;
+    }
+
+    private void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.write(keyId);
+    }
+
+    /**
+     * Читает файл при первом обращении. Оборванная последняя запись отбрасывается.
+     */
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            byte[] fileKeyId = new byte[keyId.length];
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("неизвестный формат");
+            }
+            in.readFully(fileKeyId);
+            if (!Arrays.equals(fileKeyId, keyId)) {
+                // Отпечатки посчитаны другим ключом и ни с чем не совпадут
+                rewriteNeeded = true;
+                return;
+            }
+            readRecords(in);
+        } catch (IOException e) {
+            System.err.println("Индекс отпечатков паролей повреждён и будет перестроен: " + e.getMessage());
+            byId.clear();
+            rewriteNeeded = true;
+        }
+    }
+
+    private void readRecords(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        byte[] fingerprint = new byte[FINGERPRINT_LENGTH];
+        while (true) {
+            int op = in.read();
+            if (op < 0) {
+                return;
+            }
+            try {
+                String id = in.readUTF();
+                if (op == OP_PUT) {
+                    in.readFully(fingerprint);
+                    byId.put(id, Fingerprint.of(fingerprint));
+                } else if (op == OP_REMOVE) {
+                    byId.remove(id);
+                } else {
+                    throw new IOException("неизвестная операция " + op);
+                }
+            } catch (EOFException e) {
+                // Запись оборвалась при сбое; переписываем файл без неё
+                rewriteNeeded = true;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Отпечаток как пара чисел: компактнее массива в качестве ключа и сравнивается без копирования.
+     */
+    private record Fingerprint(long high, long low) {
+
+        static Fingerprint of(byte[] bytes) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, FINGERPRINT_LENGTH);
+            return new Fingerprint(buffer.getLong(), buffer.getLong());
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeLong(high);
+            out.writeLong(low);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.passmanager.service;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Поколения ключа хранилища, которыми шифруются ключи отдельных записей, и ключ отпечатков паролей.
+ * <p>
+ * Новые записи шифруются текущим поколением. Во время смены ключа в наборе есть и предыдущие поколения:
+ * ими открываются ключи записей, которые ещё не перешифрованы. Набор неизменяем.
+ */
+final class KeyRing {
+
+    private static final String ALGORITHM = "AES";
+    private static final String FINGERPRINT_ALGORITHM = "HmacSHA256";
+    private static final int KEY_SIZE = 256;
+
+    private final int current;
+    private final Map<Integer, SecretKey> keys;
+    private final SecretKey fingerprintKey;
+
+    private KeyRing(int current, Map<Integer, SecretKey> keys, SecretKey fingerprintKey) {
+        this.current = current;
+        this.keys = Collections.unmodifiableMap(keys);
+        this.fingerprintKey = fingerprintKey;
+    }
+
+    /**
+     * Набор из одного поколения {@code 0}. Ключ отпечатков выводится из него, как в версиях с единственным ключом,
+     * поэтому уже посчитанные отпечатки остаются верными.
+     */
+    static KeyRing of(SecretKey key) {
+        Map<Integer, SecretKey> keys = new TreeMap<>();
+        keys.put(0, key);
+        return new KeyRing(0, keys, new SecretKeySpec(
+                hmac(key.getEncoded(), "password-fingerprint"), FINGERPRINT_ALGORITHM));
+    }
+
+    static KeyRing generate() {
+        return of(newKey());
+    }
+
+    int current() {
+        return current;
+    }
+
+    SecretKey currentKey() {
+        return keys.get(current);
+    }
+
+    Map<Integer, SecretKey> keys() {
+        return keys;
+    }
+
+    SecretKey fingerprintKey() {
+        return fingerprintKey;
+    }
+
+    /**
+     * Идёт ли смена ключа: кроме текущего в наборе остались предыдущие поколения.
+     */
+    boolean isRotating() {
+        return keys.size() > 1;
+    }
+
+    /**
+     * Набор с новым случайным текущим поколением; предыдущие остаются, пока записи не перешифрованы.
+     */
+    KeyRing rotate() {
+        Map<Integer, SecretKey> rotated = new TreeMap<>(keys);
+        int next = Collections.max(keys.keySet()) + 1;
+        rotated.put(next, newKey());
+        return new KeyRing(next, rotated, fingerprintKey);
+    }
+
+    /**
+     * Набор без предыдущих поколений: вызывается, когда на диске не осталось записей, зашифрованных ими.
+     */
+    KeyRing retire() {
+        Map<Integer, SecretKey> retired = new TreeMap<>();
+        retired.put(current, currentKey());
+        return new KeyRing(current, retired, fingerprintKey);
+    }
+
+    /**
+     * <pre>
+     * текущее поколение i32 | ключ отпечатков | число поколений u8 | (поколение i32 | ключ)*
+     * ключ: длина u8 | байты
+     * </pre>
+     */
+    byte[] encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(current);
+            writeKey(out, fingerprintKey);
+            out.writeByte(keys.size());
+            for (Map.Entry<Integer, SecretKey> entry : keys.entrySet()) {
+                out.writeInt(entry.getKey());
+                writeKey(out, entry.getValue());
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static KeyRing decode(byte[] encoded) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+        int current = in.readInt();
+        SecretKey fingerprintKey = new SecretKeySpec(readKey(in), FINGERPRINT_ALGORITHM);
+        int count = in.readUnsignedByte();
+        Map<Integer, SecretKey> keys = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            int generation = in.readInt();
+            keys.put(generation, new SecretKeySpec(readKey(in), ALGORITHM));
+        }
+        if (!keys.containsKey(current)) {
+            throw new IOException("В наборе ключей нет текущего поколения " + current);
+        }
+        return new KeyRing(current, keys, fingerprintKey);
+    }
+
+    private static void writeKey(DataOutputStream out, SecretKey key) throws IOException {
+        byte[] encoded = key.getEncoded();
+        out.writeByte(encoded.length);
+        out.write(encoded);
+    }
+
+    private static byte[] readKey(DataInputStream in) throws IOException {
+        byte[] key = new byte[in.readUnsignedByte()];
+        in.readFully(key);
+        return key;
+    }
+
+    private static SecretKey newKey() {
+        try {
+            KeyGenerator keyGenerator = KeyGenerator.getInstance(ALGORITHM);
+            keyGenerator.init(KEY_SIZE, new SecureRandom());
+            return keyGenerator.generateKey();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Алгоритм недоступен: " + ALGORITHM, e);
+        }
+    }
+
+    static byte[] hmac(byte[] key, String message) {
+        try {
+            Mac mac = Mac.getInstance(FINGERPRINT_ALGORITHM);
+            mac.init(new SecretKeySpec(key, FINGERPRINT_ALGORITHM));
+            return mac.doFinal(message.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Алгоритм недоступен: " + FINGERPRINT_ALGORITHM, e);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.passmanager.service;
+
+import com.example.passmanager.model.PasswordEntry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.RandomAccess;
+
+/**
+ * Двоичный снимок хранилища, отображённый в память, с доступом к записям по номеру и по id через индекс в конце файла.
+ * Записи разбираются только при обращении к ним, в памяти держится лишь несколько последних страниц,
+ * поэтому расход кучи не растёт с размером хранилища. Список только для чтения.
+ */
+public final class MappedVault extends AbstractList<PasswordEntry> implements RandomAccess, Closeable {
+
+    /**
+     * Файл отображается частями: один {@link MappedByteBuffer} ограничен 2 ГБ.
+     */
+    private static final long SEGMENT_SIZE = 1L << 30;
+    private static final int PAGE_SIZE = 256;
+    private static final int CACHED_PAGES = 16;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long fileSize;
+    private final int count;
+    private final long positionsOffset;
+    private final long byIdOffset;
+    private final EntryDecoder decoder;
+    private final Map<Integer, List<PasswordEntry>> pages = new LinkedHashMap<>(CACHED_PAGES * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<PasswordEntry>> eldest) {
+            return size() > CACHED_PAGES;
+        }
+    };
+
+    private MappedVault(FileChannel channel, EntryDecoder decoder) throws IOException {
+        this.channel = channel;
+        this.decoder = decoder;
+        this.fileSize = channel.size();
+        int segmentCount = (int) ((fileSize + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        this.segments = new MappedByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long start = i * SEGMENT_SIZE;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, fileSize - start));
+        }
+
+        if (fileSize < VaultBinaryWriter.HEADER_SIZE + VaultBinaryWriter.TRAILER_SIZE) {
+            throw new IOException("Файл слишком мал для двоичного хранилища");
+        }
+        byte[] header = new byte[VaultBinaryWriter.HEADER_SIZE];
+        read(0, header, header.length);
+        ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+        byte[] magic = new byte[VaultBinaryWriter.MAGIC.length];
+        headerBuffer.get(magic);
+        if (!Arrays.equals(magic, VaultBinaryWriter.MAGIC)
+                || headerBuffer.getShort() != VaultBinaryWriter.VERSION
+                || (headerBuffer.getShort() & VaultBinaryWriter.FLAG_INDEXED) == 0) {
+            throw new IOException("Файл не является двоичным хранилищем с индексом");
+        }
+        this.count = headerBuffer.getInt();
+
+        byte[] trailer = new byte[VaultBinaryWriter.TRAILER_SIZE];
+        read(fileSize - trailer.length, trailer, trailer.length);
+        ByteBuffer trailerBuffer = ByteBuffer.wrap(trailer);
+        this.positionsOffset = trailerBuffer.getLong();
+        this.byIdOffset = trailerBuffer.getLong();
+        int indexedCount = trailerBuffer.getInt();
+        byte[] indexMagic = new byte[VaultBinaryWriter.INDEX_MAGIC.length];
+        trailerBuffer.get(indexMagic);
+        if (!Arrays.equals(indexMagic, VaultBinaryWriter.INDEX_MAGIC) || indexedCount != count
+                || count < 0 || positionsOffset < VaultBinaryWriter.HEADER_SIZE
+                || byIdOffset != positionsOffset + (long) count * Long.BYTES
+                || byIdOffset + (long) count * Long.BYTES != fileSize - trailer.length) {
+            throw new IOException("Повреждён индекс двоичного хранилища");
+        }
+    }
+
+    /**
+     * Отображает файл в память. Файл должен быть записан с индексом (см. {@link VaultBinaryWriter}).
+     */
+    static MappedVault open(Path file, EntryDecoder decoder) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new MappedVault(channel, decoder);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Читает из заголовка число записей, не отображая файл.
+     *
+     * @return {@code -1}, если файл записан без индекса
+     */
+    static int indexedCount(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(VaultBinaryWriter.HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) > 0) {
+                // читаем заголовок целиком
+            }
+            if (header.hasRemaining()) {
+                return -1;
+            }
+            header.flip();
+            byte[] magic = new byte[VaultBinaryWriter.MAGIC.length];
+            header.get(magic);
+            boolean indexed = Arrays.equals(magic, VaultBinaryWriter.MAGIC)
+                    && header.getShort() == VaultBinaryWriter.VERSION
+                    && (header.getShort() & VaultBinaryWriter.FLAG_INDEXED) != 0;
+            return indexed ? header.getInt() : -1;
+        }
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public PasswordEntry get(int index) {
+        Objects.checkIndex(index, count);
+        return cachedPage(index / PAGE_SIZE).get(index % PAGE_SIZE);
+    }
+
+    /**
+     * Читает записи с {@code from} по {@code from + limit} (не включительно) без обращения к остальным.
+     */
+    public List<PasswordEntry> page(int from, int limit) {
+        Objects.checkFromToIndex(from, Math.min(count, from + limit), count);
+        int to = Math.min(count, from + limit);
+        List<PasswordEntry> page = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            page.add(decoder.decode(readRecord(readLong(positionsOffset + (long) i * Long.BYTES))));
+        }
+        return page;
+    }
+
+    /**
+     * Ищет запись по id двоичным поиском по индексу: читается O(log n) записей.
+     */
+    public Optional<PasswordEntry> find(String id) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long offset = readLong(byIdOffset + (long) mid * Long.BYTES);
+            int cmp = readId(offset).compareTo(id);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return Optional.of(decoder.decode(readRecord(offset)));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Закрывает файл. Само отображение освобождается сборщиком мусора, когда на список не останется ссылок.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private List<PasswordEntry> cachedPage(int page) {
+        synchronized (pages) {
+            List<PasswordEntry> cached = pages.get(page);
+            if (cached == null) {
+                cached = page(page * PAGE_SIZE, PAGE_SIZE);
+                pages.put(page, cached);
+            }
+            return cached;
+        }
+    }
+
+    private VaultBinaryRecord readRecord(long offset) {
+        try {
+            byte[] data = readRecordData(offset);
+            return VaultBinaryRecord.parse(data, data.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String readId(long offset) {
+        try {
+            byte[] data = readRecordData(offset);
+            return VaultBinaryRecord.parseId(data, data.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] readRecordData(long offset) throws IOException {
+        if (offset < VaultBinaryWriter.HEADER_SIZE || offset + Integer.BYTES > positionsOffset) {
+            throw new IOException("Неверное смещение записи: " + offset);
+        }
+        int length = readInt(offset);
+        if (length < 0 || offset + Integer.BYTES + length > positionsOffset) {
+            throw new IOException("Повреждена длина записи: " + length);
+        }
+        byte[] data = new byte[length];
+        read(offset + Integer.BYTES, data, length);
+        return data;
+    }
+
+    private int readInt(long position) {
+        int offset = (int) (position % SEGMENT_SIZE);
+        MappedByteBuffer segment = segments[(int) (position / SEGMENT_SIZE)];
+        if (offset + Integer.BYTES <= segment.limit()) {
+            return segment.getInt(offset);
+        }
+        byte[] bytes = new byte[Integer.BYTES];
+        read(position, bytes, bytes.length);
+        return ByteBuffer.wrap(bytes).getInt();
+    }
+
+    private long readLong(long position) {
+        int offset = (int) (position % SEGMENT_SIZE);
+        MappedByteBuffer segment = segments[(int) (position / SEGMENT_SIZE)];
+        if (offset + Long.BYTES <= segment.limit()) {
+            return segment.getLong(offset);
+        }
+        byte[] bytes = new byte[Long.BYTES];
+        read(position, bytes, bytes.length);
+        return ByteBuffer.wrap(bytes).getLong();
+    }
+
+    /**
+     * Копирует байты из отображения; диапазон может пересекать границу частей.
+     */
+    private void read(long position, byte[] target, int length) {
+        int done = 0;
+        while (done < length) {
+            int segment = (int) (position / SEGMENT_SIZE);
+            int offset = (int) (position % SEGMENT_SIZE);
+            int chunk = (int) Math.min(length - done, SEGMENT_SIZE - offset);
+            segments[segment].get(offset, target, done, chunk);
+            done += chunk;
+            position += chunk;
+        }
+    }
+
+    /**
+     * Превращает прочитанную запись в {@link PasswordEntry}.
+     */
+    @FunctionalInterface
+    interface EntryDecoder {
+        PasswordEntry decode(VaultBinaryRecord record);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.passmanager.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Встроенный список слов для парольных фраз: 4096 частых английских слов из 4–7 букв.
+ * Размер списка — степень двойки, поэтому слово выбирается по 12 случайным битам без отбрасывания.
+ * Список читается из ресурса при первом обращении.
+ */
+final class PassphraseWords {
+
+    private static final String RESOURCE = "passphrase-words.txt";
+
+    private PassphraseWords() {
+    }
+
+    static List<String> get() {
+        return Holder.WORDS;
+    }
+
+    private static final class Holder {
+
+        private static final List<String> WORDS = load();
+
+        private static List<String> load() {
+            try (InputStream in = PassphraseWords.class.getResourceAsStream(RESOURCE)) {
+                if (in == null) {
+                    throw new IllegalStateException("Список слов для парольных фраз не найден");
+                }
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                return reader.lines().map(String::strip).filter(word -> !word.isEmpty()).toList();
+            } catch (IOException e) {
+                throw new IllegalStateException("Ошибка чтения списка слов: " + e.getMessage(), e);
+            }
+        }
+    }
+}
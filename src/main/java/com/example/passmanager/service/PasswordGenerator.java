@@ -1,27 +1,245 @@
 package com.example.passmanager.service;
 
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
- * Генератор случайных паролей.
+ * Генератор случайных паролей и парольных фраз по {@link PasswordPolicy}.
+ * <p>
+ * Случайные байты берутся блоками из собственного {@link SecureRandom} каждого потока, поэтому потоки
+ * не ждут друг друга на общем генераторе. Байты переводятся в номер символа отбрасыванием значений
+ * за последним полным кратным размера алфавита: все символы равновероятны. Пароль, в котором
+ * не оказалось символа обязательного класса, генерируется заново — так распределение остаётся
+ * равномерным среди всех подходящих паролей.
  */
 public final class PasswordGenerator {
 
-    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789!@#$%^&*()-_=+";
-    private static final SecureRandom RANDOM = new SecureRandom();
+    /**
+     * Длина, с которой начинается выбор длины в форме.
+     */
+    private static final int MIN_FORM_LENGTH = 6;
+    private static final ThreadLocal<RandomBytes> RANDOM = ThreadLocal.withInitial(RandomBytes::new);
 
     private PasswordGenerator() {
     }
 
+    /**
+     * Пароль из символов всех классов длиной не меньше {@value #MIN_FORM_LENGTH}.
+     */
     public static String generate(int length) {
-        if (length < 6) {
-            length = 6;
+        return generate(PasswordPolicy.characters(Math.max(MIN_FORM_LENGTH, length)));
+    }
+
+    public static String generate(PasswordPolicy policy) {
+        return compile(policy).next(RANDOM.get());
+    }
+
+    /**
+     * Генерирует {@code count} паролей по одной политике. Большие партии делятся на части,
+     * которые генерируются параллельно.
+     *
+     * @throws IllegalArgumentException если политике не удовлетворяет ни один пароль
+     */
+    public static List<String> generate(PasswordPolicy policy, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Число паролей не может быть отрицательным: " + count);
         }
-        StringBuilder builder = new StringBuilder(length);
-        for (int i = 0; i < length; i++) {
-            builder.append(ALPHABET.charAt(RANDOM.nextInt(ALPHABET.length())));
+        Compiled compiled = compile(policy);
+        String[] passwords = new String[count];
+        CryptoPipeline.shared().forEachChunk(count, (from, to) -> compiled.fill(passwords, from, to));
+        return List.of(passwords);
+    }
+
+    /**
+     * Проверяет политику и готовит алфавит: один раз на партию, а не на каждый пароль.
+     */
+    private static Compiled compile(PasswordPolicy policy) {
+        if (policy.isPassphrase()) {
+            Set<String> words = new LinkedHashSet<>(policy.words());
+            return new Passphrase(policy.length(), words.toArray(String[]::new), policy.separator());
+        }
+        String source = policy.alphabet();
+        if (source == null) {
+            StringBuilder all = new StringBuilder();
+            for (PasswordPolicy.CharacterClass characterClass : PasswordPolicy.CharacterClass.values()) {
+                all.append(characterClass.characters());
+            }
+            source = all.toString();
+        }
+        StringBuilder alphabet = new StringBuilder(source.length());
+        source.chars().distinct()
+                .filter(c -> !policy.excludeAmbiguous() || PasswordPolicy.AMBIGUOUS.indexOf(c) < 0)
+                .forEach(c -> alphabet.append((char) c));
+        if (alphabet.isEmpty()) {
+            throw new IllegalArgumentException("В алфавите не осталось символов");
+        }
+        for (int i = 0; i < alphabet.length(); i++) {
+            if (Character.isSurrogate(alphabet.charAt(i))) {
+                throw new IllegalArgumentException("Алфавит может содержать только символы из 16 бит");
+            }
+        }
+
+        List<PasswordPolicy.CharacterClass> required = new ArrayList<>(policy.required());
+        if (required.size() > policy.length()) {
+            throw new IllegalArgumentException("Длина " + policy.length() + " меньше числа обязательных классов");
         }
-        return builder.toString();
+        byte[] classes = new byte[alphabet.length()];
+        int seen = 0;
+        for (int i = 0; i < classes.length; i++) {
+            for (int bit = 0; bit < required.size(); bit++) {
+                if (required.get(bit).contains(alphabet.charAt(i))) {
+                    classes[i] |= (byte) (1 << bit);
+                }
+            }
+            seen |= classes[i];
+        }
+        int requiredMask = (1 << required.size()) - 1;
+        if (seen != requiredMask) {
+            throw new IllegalArgumentException("В алфавите нет символов какого-то из обязательных классов");
+        }
+        return new Characters(policy.length(), alphabet.toString().toCharArray(), classes, requiredMask);
     }
-}
 
+    /**
+     * Политика, подготовленная к генерации.
+     */
+    private abstract static class Compiled {
+
+        abstract String next(RandomBytes random);
+
+        void fill(String[] passwords, int from, int to) {
+            RandomBytes random = RANDOM.get();
+            for (int i = from; i < to; i++) {
+                passwords[i] = next(random);
+            }
+        }
+    }
+
+    private static final class Characters extends Compiled {
+
+        private final int length;
+        private final char[] alphabet;
+        /**
+         * Для каждого символа алфавита — биты обязательных классов, к которым он относится.
+         */
+        private final byte[] classes;
+        private final int requiredMask;
+
+        Characters(int length, char[] alphabet, byte[] classes, int requiredMask) {
+            this.length = length;
+            this.alphabet = alphabet;
+            this.classes = classes;
+            this.requiredMask = requiredMask;
+        }
+
+        @Override
+        String next(RandomBytes random) {
+            char[] password = new char[length];
+            try {
+                int present;
+                do {
+                    present = 0;
+                    for (int i = 0; i < length; i++) {
+                        int index = random.nextIndex(alphabet.length);
+                        password[i] = alphabet[index];
+                        present |= classes[index];
+                    }
+                } while (present != requiredMask);
+                return new String(password);
+            } finally {
+                Arrays.fill(password, '\0');
+            }
+        }
+    }
+
+    private static final class Passphrase extends Compiled {
+
+        private final int wordCount;
+        private final String[] words;
+        private final String separator;
+
+        Passphrase(int wordCount, String[] words, String separator) {
+            this.wordCount = wordCount;
+            this.words = words;
+            this.separator = separator;
+        }
+
+        @Override
+        String next(RandomBytes random) {
+            StringBuilder phrase = new StringBuilder(wordCount * 8);
+            for (int i = 0; i < wordCount; i++) {
+                if (i > 0) {
+                    phrase.append(separator);
+                }
+                phrase.append(words[random.nextIndex(words.length)]);
+            }
+            return phrase.toString();
+        }
+    }
+
+    /**
+     * Случайные байты потока, запрашиваемые у {@link SecureRandom} блоками.
+     */
+    private static final class RandomBytes {
+
+        private final SecureRandom random = newRandom();
+        private final byte[] buffer = new byte[4096];
+        private int position = buffer.length;
+
+        /**
+         * Равновероятный номер от {@code 0} до {@code bound - 1}.
+         */
+        int nextIndex(int bound) {
+            if (bound <= 1 << 8) {
+                int limit = (1 << 8) - (1 << 8) % bound;
+                int value;
+                do {
+                    value = nextByte();
+                } while (value >= limit);
+                return value % bound;
+            }
+            if (bound <= 1 << 16) {
+                int limit = (1 << 16) - (1 << 16) % bound;
+                int value;
+                do {
+                    value = nextByte() << 8 | nextByte();
+                } while (value >= limit);
+                return value % bound;
+            }
+            long limit = (1L << 32) - (1L << 32) % bound;
+            long value;
+            do {
+                value = (long) nextByte() << 24 | nextByte() << 16 | nextByte() << 8 | nextByte();
+            } while (value >= limit);
+            return (int) (value % bound);
+        }
+
+        private int nextByte() {
+            if (position == buffer.length) {
+                random.nextBytes(buffer);
+                position = 0;
+            }
+            // Использованный байт стирается: по буферу нельзя восстановить уже выданные пароли
+            int value = buffer[position] & 0xFF;
+            buffer[position++] = 0;
+            return value;
+        }
+
+        /**
+         * Генератор DRBG у каждого потока свой; стандартный {@code NativePRNG} общий для всех экземпляров
+         * и упирается в одну блокировку.
+         */
+        private static SecureRandom newRandom() {
+            try {
+                return SecureRandom.getInstance("DRBG");
+            } catch (NoSuchAlgorithmException e) {
+                return new SecureRandom();
+            }
+        }
+    }
+}
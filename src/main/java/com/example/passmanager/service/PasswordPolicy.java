@@ -0,0 +1,126 @@
+package com.example.passmanager.service;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Правила генерации пароля: длина, обязательные классы символов, алфавит или список слов для парольной фразы.
+ * Политика неизменяема, отдельные правила меняются методами {@code with…}.
+ *
+ * @param length           число символов или, для парольной фразы, число слов
+ * @param required         классы символов, каждый из которых должен встретиться в пароле хотя бы раз
+ * @param excludeAmbiguous исключать символы, которые легко спутать ({@value #AMBIGUOUS})
+ * @param alphabet         свой алфавит; {@code null} — все символы {@link CharacterClass}
+ * @param words            список слов для парольной фразы; {@code null} — пароль из символов
+ * @param separator        разделитель слов парольной фразы
+ */
+public record PasswordPolicy(int length, Set<CharacterClass> required, boolean excludeAmbiguous,
+                             String alphabet, List<String> words, String separator) {
+
+    /**
+     * Символы, которые легко спутать при чтении и вводе вручную.
+     */
+    public static final String AMBIGUOUS = "Il1O0o";
+
+    public PasswordPolicy {
+        if (length < 1) {
+            throw new IllegalArgumentException("Длина должна быть положительной: " + length);
+        }
+        required = Collections.unmodifiableSet(required.isEmpty()
+                ? EnumSet.noneOf(CharacterClass.class) : EnumSet.copyOf(required));
+        if (alphabet != null && alphabet.isEmpty()) {
+            throw new IllegalArgumentException("Алфавит не может быть пустым");
+        }
+        if (words != null) {
+            words = List.copyOf(words);
+            if (words.isEmpty()) {
+                throw new IllegalArgumentException("Список слов не может быть пустым");
+            }
+        }
+        if (separator == null) {
+            throw new IllegalArgumentException("Разделитель не может быть null");
+        }
+    }
+
+    /**
+     * Пароль из {@code length} символов всех классов, в котором есть символ каждого класса.
+     */
+    public static PasswordPolicy characters(int length) {
+        return new PasswordPolicy(length, EnumSet.allOf(CharacterClass.class), false, null, null, "");
+    }
+
+    /**
+     * Парольная фраза из {@code words} слов встроенного списка (4096 слов, 12 бит на слово) через дефис.
+     */
+    public static PasswordPolicy passphrase(int words) {
+        return new PasswordPolicy(words, Set.of(), false, null, PassphraseWords.get(), "-");
+    }
+
+    public boolean isPassphrase() {
+        return words != null;
+    }
+
+    public PasswordPolicy withLength(int length) {
+        return new PasswordPolicy(length, required, excludeAmbiguous, alphabet, words, separator);
+    }
+
+    public PasswordPolicy withRequired(Set<CharacterClass> required) {
+        return new PasswordPolicy(length, required, excludeAmbiguous, alphabet, words, separator);
+    }
+
+    public PasswordPolicy withExcludeAmbiguous(boolean excludeAmbiguous) {
+        return new PasswordPolicy(length, required, excludeAmbiguous, alphabet, words, separator);
+    }
+
+    /**
+     * Свой алфавит вместо стандартного. Повторяющиеся символы учитываются один раз.
+     */
+    public PasswordPolicy withAlphabet(String alphabet) {
+        return new PasswordPolicy(length, required, excludeAmbiguous, alphabet, words, separator);
+    }
+
+    /**
+     * Парольная фраза из слов данного списка; повторяющиеся слова учитываются один раз.
+     */
+    public PasswordPolicy withWords(List<String> words) {
+        return new PasswordPolicy(length, required, excludeAmbiguous, alphabet, words, separator);
+    }
+
+    public PasswordPolicy withSeparator(String separator) {
+        return new PasswordPolicy(length, required, excludeAmbiguous, alphabet, words, separator);
+    }
+
+    /**
+     * Классы символов. Символы своего алфавита относятся к классу по категории Unicode.
+     */
+    public enum CharacterClass {
+        UPPERCASE("ABCDEFGHIJKLMNOPQRSTUVWXYZ"),
+        LOWERCASE("abcdefghijklmnopqrstuvwxyz"),
+        DIGITS("0123456789"),
+        SYMBOLS("!@#$%^&*()-_=+");
+
+        private final String characters;
+
+        CharacterClass(String characters) {
+            this.characters = characters;
+        }
+
+        /**
+         * Символы класса в стандартном алфавите.
+         */
+        public String characters() {
+            return characters;
+        }
+
+        public boolean contains(char c) {
+            return switch (this) {
+                case UPPERCASE -> Character.isUpperCase(c);
+                case LOWERCASE -> Character.isLowerCase(c);
+                case DIGITS -> Character.isDigit(c);
+                case SYMBOLS -> !Character.isLetterOrDigit(c) && !Character.isWhitespace(c);
+            };
+        }
+    }
+}
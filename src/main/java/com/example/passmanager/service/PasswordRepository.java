@@ -2,52 +2,260 @@ package com.example.passmanager.service;
 
 import com.example.passmanager.model.PasswordEntry;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 /**
- * Хранилище записей на файловой системе пользователя в формате JSON.
+ * Хранилище записей на файловой системе пользователя в формате JSON или в двоичном формате ({@link VaultFormat}).
+ * Изменения дописываются в журнал рядом со снимком {@code vault.json} (или {@code vault.pmv}),
+ * а фоновое уплотнение периодически переносит журнал в снимок.
+ * Запись на диск отложенная: серии изменений объединяются и сбрасываются одним обращением к диску.
+ * Снимки пишутся атомарно с контрольной суммой, несколько предыдущих поколений сохраняются на случай повреждения.
  */
 public final class PasswordRepository {
 
+    private static final String JOURNAL_FILE_NAME = "vault.journal";
+    private static final String FINGERPRINTS_FILE_NAME = "fingerprints.idx";
+    private static final int COMPACTION_THRESHOLD = 5_000;
+    private static final Duration DEFAULT_DEBOUNCE = Duration.ofMillis(300);
+    private static final Duration DEFAULT_MAX_DELAY = Duration.ofSeconds(2);
+    private static final int SNAPSHOT_GENERATIONS = 3;
+    private static final int DEFAULT_PLAINTEXT_ENTRIES = 256;
+    private static final Duration DEFAULT_PLAINTEXT_IDLE = Duration.ofMinutes(5);
+    private static final int READ_CHUNK_SIZE = 16_384;
+    /**
+     * Столько записей шифруется и пишется за раз: память на запись файла не зависит от его размера.
+     */
+    private static final int WRITE_CHUNK_SIZE = 16_384;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final int PROGRESS_STEP = 16_384;
+    private static final BooleanSupplier NOT_CANCELLED = () -> false;
+
+    private static final String OP_ADD = "add";
+    private static final String OP_UPDATE = "update";
+    private static final String OP_DELETE = "delete";
+
     private final Path defaultFile;
     private final Path baseDir;
+    private final VaultFormat format;
+    private final VaultKey vaultKey;
     private final EncryptionService encryptionService;
+    private final CryptoPipeline cryptoPipeline = CryptoPipeline.shared();
+    private final VaultJournal journal;
+    private final VaultSnapshots snapshots;
+    private final FingerprintIndex fingerprints;
+    private final Object snapshotLock = new Object();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private final Object flushLock = new Object();
+    private final Object pendingLock = new Object();
+    private final List<String> pendingRecords = new ArrayList<>();
+    /**
+     * Ожидания записи на диск, по одному на каждую строку {@link #pendingRecords}.
+     */
+    private final List<CompletableFuture<Boolean>> pendingWritten = new ArrayList<>();
+    private List<PasswordEntry> pendingSnapshot;
+    /**
+     * Ожидания записей журнала, которые вошли в отложенный снимок: завершаются вместе с его записью.
+     */
+    private final List<CompletableFuture<Boolean>> snapshotWritten = new ArrayList<>();
+    private final WriteBehindScheduler writeBehind =
+            new WriteBehindScheduler(this::flushPending, DEFAULT_DEBOUNCE, DEFAULT_MAX_DELAY);
+    private volatile boolean migrationPending;
+    private final List<MappedVault> mappedVaults = new CopyOnWriteArrayList<>();
+    private final PlaintextCache plaintextCache = new PlaintextCache(DEFAULT_PLAINTEXT_ENTRIES, DEFAULT_PLAINTEXT_IDLE);
+    private final PasswordEntry.Decryptor decryptor = new PasswordEntry.Decryptor() {
+        @Override
+        public String decrypt(String encryptedPassword) {
+            return plaintextCache.get(encryptedPassword, encryptionService::decrypt);
+        }
+
+        @Override
+        public void evict(String encryptedPassword) {
+            plaintextCache.evict(encryptedPassword);
+        }
+    };
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "vault-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "vault-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Каталог хранилища по умолчанию в домашнем каталоге пользователя.
+     */
+    public static Path defaultDirectory() {
+        return Path.of(System.getProperty("user.home"), ".simple-password-manager");
+    }
+
+    /**
+     * Создаёт хранилище, снимок которого хранится в указанном формате.
+     * Снимок в другом формате, если он остался от прежних запусков, читается и переписывается в выбранном.
+     *
+     * @param vaultKey хранилище, открытое мастер-паролем; используется весь сеанс
+     */
+    public PasswordRepository(Path baseDir, VaultFormat format, VaultKey vaultKey) {
+        this.baseDir = baseDir;
+        this.format = format;
+        this.defaultFile = snapshotFile(baseDir, format);
+        this.vaultKey = vaultKey;
+        this.encryptionService = new EncryptionService(vaultKey);
+        this.journal = new VaultJournal(baseDir.resolve(JOURNAL_FILE_NAME));
+        this.snapshots = new VaultSnapshots(defaultFile, SNAPSHOT_GENERATIONS);
+        this.fingerprints = new FingerprintIndex(baseDir.resolve(FINGERPRINTS_FILE_NAME),
+                encryptionService.fingerprintKeyId());
+    }
+
+    /**
+     * Задаёт, сколько расшифрованных паролей держать в памяти и как долго без обращений.
+     * По умолчанию {@value #DEFAULT_PLAINTEXT_ENTRIES} паролей и 5 минут.
+     *
+     * @see PlaintextCache
+     */
+    public void configurePlaintextCache(int maxEntries, Duration idleTimeout) {
+        plaintextCache.configure(maxEntries, idleTimeout);
+    }
 
-    public PasswordRepository() {
-        this.baseDir = Path.of(System.getProperty("user.home"), ".simple-password-manager");
-        this.defaultFile = baseDir.resolve("vault.json");
-        this.encryptionService = new EncryptionService(baseDir);
+    /**
+     * Попадания и промахи кэша расшифрованных паролей.
+     */
+    public PlaintextCache.Stats plaintextCacheStats() {
+        return plaintextCache.stats();
     }
 
+    /**
+     * Задаёт число потоков для массового шифрования и расшифровки при загрузке, сохранении, импорте и экспорте.
+     * Пул общий для всех массовых операций приложения: аудит надёжности, проверка по базе утечек
+     * и генерация партий паролей выполняются в нём же.
+     */
+    public void setCryptoParallelism(int parallelism) {
+        cryptoPipeline.setParallelism(parallelism);
+    }
+
+    public int getCryptoParallelism() {
+        return cryptoPipeline.getParallelism();
+    }
+
+    /**
+     * Загружает снимок и воспроизводит поверх него журнал изменений.
+     */
     public List<PasswordEntry> load() {
-        return loadFrom(defaultFile).orElseGet(ArrayList::new);
+        flush();
+        synchronized (snapshotLock) {
+            migrationPending = false;
+            Map<String, PasswordEntry> byId = new LinkedHashMap<>();
+            for (PasswordEntry entry : loadSnapshot()) {
+                byId.put(entry.getId(), entry);
+            }
+
+            boolean damaged = journal.hasRotated();
+            int liveRecords = 0;
+            for (Path file : journal.files()) {
+                try {
+                    Replay replay = replayJournal(file, byId);
+                    damaged |= replay.truncated();
+                    liveRecords = replay.records();
+                } catch (IOException e) {
+                    System.err.println("Не удалось прочитать журнал: " + e.getMessage());
+                    damaged = true;
+                }
+            }
+
+            List<PasswordEntry> entries = new ArrayList<>(byId.values());
+            if (damaged || migrationPending) {
+                // Незавершённое уплотнение, оборванная запись или пароли в старом формате шифрования:
+                // сразу фиксируем состояние в новом снимке
+                writeSnapshot(entries);
+            } else {
+                journal.setRecords(liveRecords);
+                if (liveRecords >= COMPACTION_THRESHOLD) {
+                    scheduleCompaction();
+                }
+            }
+            return entries;
+        }
     }
 
     public Optional<List<PasswordEntry>> loadFrom(Path path) {
+        return loadFrom(path, ProgressListener.NONE, NOT_CANCELLED);
+    }
+
+    /**
+     * Читает записи из потока в указанном формате, например из стандартного ввода. Поток не закрывается.
+     */
+    public Optional<List<PasswordEntry>> loadFrom(InputStream input, VaultFormat fileFormat) {
+        try {
+            return Optional.of(readEntries(fileFormat, notClosing(input), () -> {
+            }));
+        } catch (IOException e) {
+            System.err.println("Не удалось прочитать хранилище: " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private Optional<List<PasswordEntry>> loadFrom(Path path, ProgressListener progress, BooleanSupplier cancelled) {
         if (path == null || !Files.exists(path)) {
             return Optional.empty();
         }
-        
-        // Проверяем, что файл имеет расширение .json
-        String fileName = path.getFileName().toString().toLowerCase();
-        if (!fileName.endsWith(".json")) {
-            System.err.println("Ошибка: можно загружать только JSON файлы (.json)");
+
+        Optional<VaultFormat> fileFormat = VaultFormat.fromPath(path);
+        if (fileFormat.isEmpty()) {
+            System.err.println("Ошибка: можно загружать только файлы хранилища (.json, .pmv)");
             return Optional.empty();
         }
-        
+
         try {
-            String jsonContent = Files.readString(path, StandardCharsets.UTF_8);
-            List<PasswordEntry> entries = parseJson(jsonContent);
+            long size = Files.size(path);
+            CountingInputStream input = new CountingInputStream(Files.newInputStream(path));
+            List<PasswordEntry> entries = readEntries(fileFormat.get(), input, () -> {
+                if (cancelled.getAsBoolean()) {
+                    throw new CancellationException("Загрузка отменена");
+                }
+                progress.onProgress(input.count(), size);
+            });
+            progress.onProgress(size, size);
             return Optional.of(entries);
         } catch (IOException e) {
             System.err.println("Не удалось прочитать хранилище: " + e.getMessage());
@@ -55,47 +263,611 @@ public final class PasswordRepository {
         }
     }
 
+    /**
+     * Добавляет в хранилище записи из файла, которых в нём ещё нет. Файл не загружается целиком:
+     * записи читаются блоками, и новые записи каждого блока сразу дописываются в журнал.
+     *
+     * @param knownIds id записей хранилища, такие записи файла пропускаются; набор не изменяется.
+     *                 Если id в файле повторяется, добавляется только первая запись с ним
+     * @param onAdded  получает новые записи каждого блока после того, как они записаны в журнал
+     * @return число добавленных записей; пусто, если файл не удалось прочитать или записи не удалось сохранить
+     */
+    public OptionalLong importFrom(Path path, Set<String> knownIds, Consumer<List<PasswordEntry>> onAdded) {
+        return importFrom(path, knownIds, onAdded, ProgressListener.NONE, NOT_CANCELLED);
+    }
+
+    /**
+     * Как {@link #importFrom(Path, Set, Consumer)}, но записи читаются из потока в указанном формате.
+     * Поток не закрывается.
+     */
+    public OptionalLong importFrom(InputStream input, VaultFormat fileFormat, Set<String> knownIds,
+                                   Consumer<List<PasswordEntry>> onAdded) {
+        Importer importer = new Importer(knownIds, onAdded);
+        try {
+            readChunks(fileFormat, notClosing(input), importer);
+            return importer.finish();
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Не удалось импортировать записи: " + e.getMessage());
+            return OptionalLong.empty();
+        }
+    }
+
+    private OptionalLong importFrom(Path path, Set<String> knownIds, Consumer<List<PasswordEntry>> onAdded,
+                                    ProgressListener progress, BooleanSupplier cancelled) {
+        if (path == null || !Files.exists(path)) {
+            return OptionalLong.empty();
+        }
+
+        Optional<VaultFormat> fileFormat = VaultFormat.fromPath(path);
+        if (fileFormat.isEmpty()) {
+            System.err.println("Ошибка: можно загружать только файлы хранилища (.json, .pmv)");
+            return OptionalLong.empty();
+        }
+
+        Importer importer = new Importer(knownIds, onAdded);
+        try {
+            long size = Files.size(path);
+            CountingInputStream input = new CountingInputStream(Files.newInputStream(path));
+            readChunks(fileFormat.get(), input, chunk -> {
+                importer.accept(chunk);
+                if (cancelled.getAsBoolean()) {
+                    throw new CancellationException("Импорт отменён");
+                }
+                progress.onProgress(input.count(), size);
+            });
+            progress.onProgress(size, size);
+            return importer.finish();
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Не удалось импортировать записи: " + e.getMessage());
+            return OptionalLong.empty();
+        }
+    }
+
+    /**
+     * Открывает двоичный снимок хранилища, отображённый в память, для постраничного просмотра без загрузки всех записей.
+     * Если журнал не пуст или снимок записан без индекса, снимок предварительно переписывается.
+     * Отображение действует до вызова {@link #close()}; изменения, сделанные после открытия, в нём не видны.
+     *
+     * @return пусто, если хранилище ведётся не в двоичном формате или снимок не удалось открыть
+     */
+    public Optional<MappedVault> openMapped() {
+        return openMapped(0);
+    }
+
+    /**
+     * Как {@link #openMapped()}, но хранилище меньше {@code minEntries} записей не отображается:
+     * его дешевле загрузить целиком через {@link #load()}.
+     */
+    public Optional<MappedVault> openMapped(int minEntries) {
+        if (format != VaultFormat.BINARY) {
+            return Optional.empty();
+        }
+        flush();
+        try {
+            boolean stale;
+            synchronized (snapshotLock) {
+                stale = !journal.isEmpty() || !Files.exists(defaultFile) || MappedVault.indexedCount(defaultFile) < 0;
+            }
+            // Однократно переносим журнал в снимок, после этого записи читаются прямо из файла
+            if (stale && !writeSnapshot(load())) {
+                return Optional.empty();
+            }
+            synchronized (snapshotLock) {
+                if (MappedVault.indexedCount(defaultFile) < minEntries) {
+                    return Optional.empty();
+                }
+                if (!snapshots.verify(defaultFile)) {
+                    System.err.println("Контрольная сумма снимка не совпадает: " + defaultFile.getFileName());
+                    return Optional.empty();
+                }
+                MappedVault mapped = MappedVault.open(defaultFile,
+                        record -> toEntry(RawEntry.of(record, encryptionService)));
+                mappedVaults.add(mapped);
+                return Optional.of(mapped);
+            }
+        } catch (IOException e) {
+            System.err.println("Не удалось отобразить хранилище в память: " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public VaultFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Ставит полный снимок хранилища в очередь отложенной записи.
+     * Серия вызовов в пределах окна записывается на диск один раз; записи журнала до снимка в него уже входят.
+     */
     public void save(List<PasswordEntry> entries) {
-        saveTo(defaultFile, entries);
+        synchronized (pendingLock) {
+            pendingSnapshot = entries;
+            pendingRecords.clear();
+            snapshotWritten.addAll(pendingWritten);
+            pendingWritten.clear();
+        }
+        writeBehind.request();
+    }
+
+    /**
+     * Добавляет запись в журнал. Стоимость не зависит от размера хранилища.
+     * Запись ставится в очередь отложенной записи, см. {@link #setWriteBehind(Duration, Duration)}.
+     *
+     * @return завершается {@code true}, когда запись сброшена на диск, или {@code false}, если её не удалось
+     *         записать; такое изменение отбрасывается и повторно не записывается
+     */
+    public CompletableFuture<Boolean> recordAdd(PasswordEntry entry) {
+        fingerprints.put(entry.getId(), encryptionService.fingerprint(entry.getPassword()));
+        return appendRecord(toJournalRecord(OP_ADD, entry));
+    }
+
+    public CompletableFuture<Boolean> recordUpdate(PasswordEntry entry) {
+        fingerprints.put(entry.getId(), encryptionService.fingerprint(entry.getPassword()));
+        return appendRecord(toJournalRecord(OP_UPDATE, entry));
+    }
+
+    public CompletableFuture<Boolean> recordDelete(String entryId) {
+        fingerprints.remove(entryId);
+        return appendRecord("{\"op\":\"" + OP_DELETE + "\",\"id\":\"" + escapeJson(entryId) + "\"}\n");
+    }
+
+    /**
+     * Находит записи с одинаковыми паролями: группы id, по одной на каждый повторяющийся пароль.
+     * Пароли сравниваются по отпечаткам из индекса, который ведётся при сохранении записей и хранится на диске,
+     * поэтому расшифровываются только записи, которых в индексе ещё нет (например, после первого запуска).
+     */
+    public List<List<String>> findReused(List<PasswordEntry> entries) {
+        indexFingerprints(entries);
+        flushFingerprints();
+        List<String> ids = new ArrayList<>(entries.size());
+        for (PasswordEntry entry : entries) {
+            if (entry != null) {
+                ids.add(entry.getId());
+            }
+        }
+        return fingerprints.reuseGroups(ids);
+    }
+
+    /**
+     * Задаёт окно отложенной записи: изменения записываются после паузы {@code debounce},
+     * но не позже {@code maxDelay} после первого незаписанного изменения. Нулевые значения — запись сразу.
+     */
+    public void setWriteBehind(Duration debounce, Duration maxDelay) {
+        writeBehind.configure(debounce, maxDelay);
+    }
+
+    /**
+     * Немедленно записывает все отложенные изменения.
+     *
+     * @return {@code false}, если не удалось записать снимок или записи журнала
+     */
+    public boolean flush() {
+        return writeBehind.flush();
+    }
+
+    /**
+     * Дожидается фоновых операций и записывает отложенные изменения. Вызывается при завершении приложения.
+     *
+     * @return {@code false}, если часть изменений не удалось записать: после закрытия они потеряны
+     */
+    public boolean close() {
+        ioExecutor.shutdown();
+        try {
+            if (!ioExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                System.err.println("Фоновые операции с хранилищем не завершились вовремя");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        boolean flushed = writeBehind.flush();
+        writeBehind.close();
+        if (!flushed) {
+            System.err.println("Не все изменения удалось записать на диск перед закрытием хранилища");
+            synchronized (pendingLock) {
+                complete(snapshotWritten, false);
+                complete(pendingWritten, false);
+            }
+        }
+        plaintextCache.close();
+        try {
+            fingerprints.close();
+        } catch (IOException e) {
+            System.err.println("Не удалось записать индекс отпечатков паролей: " + e.getMessage());
+        }
+        for (MappedVault mapped : mappedVaults) {
+            try {
+                mapped.close();
+            } catch (IOException e) {
+                System.err.println("Не удалось закрыть отображённое хранилище: " + e.getMessage());
+            }
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.err.println("Не удалось закрыть журнал: " + e.getMessage());
+        }
+        return flushed;
+    }
+
+    private CompletableFuture<Boolean> appendRecord(String record) {
+        CompletableFuture<Boolean> written = new CompletableFuture<>();
+        synchronized (pendingLock) {
+            pendingRecords.add(record);
+            pendingWritten.add(written);
+        }
+        writeBehind.request();
+        return written;
+    }
+
+    /**
+     * Завершает ожидания и очищает список.
+     */
+    private static void complete(List<CompletableFuture<Boolean>> waiting, boolean written) {
+        for (CompletableFuture<Boolean> future : waiting) {
+            future.complete(written);
+        }
+        waiting.clear();
+    }
+
+    /**
+     * Записывает накопленные изменения: сначала снимок, если он запрошен, затем записи журнала одним сбросом на диск.
+     * Снимок при ошибке возвращается в очередь. Записи журнала, которые не удалось записать, отбрасываются,
+     * а их ожидания завершаются {@code false}: тот, кто их сделал, откатывает изменение сам.
+     */
+    private boolean flushPending() {
+        synchronized (flushLock) {
+            List<PasswordEntry> snapshot;
+            List<String> records;
+            List<CompletableFuture<Boolean>> inSnapshot;
+            List<CompletableFuture<Boolean>> inRecords;
+            synchronized (pendingLock) {
+                snapshot = pendingSnapshot;
+                records = new ArrayList<>(pendingRecords);
+                inSnapshot = new ArrayList<>(snapshotWritten);
+                inRecords = new ArrayList<>(pendingWritten);
+                pendingSnapshot = null;
+                pendingRecords.clear();
+                snapshotWritten.clear();
+                pendingWritten.clear();
+            }
+            if (snapshot != null && !writeSnapshot(snapshot)) {
+                synchronized (pendingLock) {
+                    if (pendingSnapshot == null) {
+                        pendingSnapshot = snapshot;
+                        complete(inRecords, false);
+                    } else {
+                        // Более новый снимок уже включает и эти записи журнала
+                        snapshotWritten.addAll(inRecords);
+                    }
+                    snapshotWritten.addAll(0, inSnapshot);
+                }
+                return false;
+            }
+            complete(inSnapshot, true);
+            if (records.isEmpty()) {
+                return true;
+            }
+            try {
+                if (journal.append(records) >= COMPACTION_THRESHOLD) {
+                    scheduleCompaction();
+                }
+                flushFingerprints();
+                complete(inRecords, true);
+                return true;
+            } catch (IOException e) {
+                System.err.println("Не удалось записать журнал: " + e.getMessage());
+                complete(inRecords, false);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Читает самый новый снимок с верной контрольной суммой; повреждённые поколения пропускаются.
+     */
+    private List<PasswordEntry> loadSnapshot() {
+        for (Path candidate : snapshots.candidates()) {
+            try {
+                if (!snapshots.verify(candidate)) {
+                    System.err.println("Контрольная сумма снимка не совпадает: " + candidate.getFileName());
+                    continue;
+                }
+                if (!candidate.equals(defaultFile)) {
+                    System.err.println("Хранилище восстановлено из предыдущего снимка: " + candidate.getFileName());
+                }
+                return readEntries(format, Files.newInputStream(candidate), () -> {
+                });
+            } catch (IOException e) {
+                System.err.println("Не удалось прочитать снимок " + candidate.getFileName() + ": " + e.getMessage());
+            }
+        }
+        return loadOtherFormatSnapshot();
+    }
+
+    /**
+     * Читает снимок, записанный в другом формате, если снимка в текущем формате нет.
+     * Прочитанные записи сразу сохраняются в текущем формате.
+     */
+    private List<PasswordEntry> loadOtherFormatSnapshot() {
+        for (VaultFormat other : VaultFormat.values()) {
+            Path file = snapshotFile(baseDir, other);
+            if (other == format || !Files.exists(file)) {
+                continue;
+            }
+            try {
+                List<PasswordEntry> entries = readEntries(other, Files.newInputStream(file), () -> {
+                });
+                System.err.println("Хранилище переводится в формат " + format + " из " + file.getFileName());
+                migrationPending = true;
+                return entries;
+            } catch (IOException e) {
+                System.err.println("Не удалось прочитать снимок " + file.getFileName() + ": " + e.getMessage());
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    private static Path snapshotFile(Path baseDir, VaultFormat format) {
+        return baseDir.resolve("vault" + format.getExtension());
+    }
+
+    /**
+     * Записывает полный снимок и очищает журнал, изменения из которого в него уже вошли.
+     */
+    private boolean writeSnapshot(List<PasswordEntry> entries) {
+        synchronized (snapshotLock) {
+            synchronized (journal) {
+                if (!writeVault(defaultFile, format, entries, ProgressListener.NONE, NOT_CANCELLED, true)) {
+                    return false;
+                }
+                try {
+                    journal.reset();
+                } catch (IOException e) {
+                    System.err.println("Не удалось очистить журнал: " + e.getMessage());
+                }
+                // Снимок — полный список записей: по нему индекс отпечатков забывает удалённые и дополняется новыми
+                Set<String> ids = new HashSet<>();
+                for (PasswordEntry entry : entries) {
+                    if (entry != null) {
+                        ids.add(entry.getId());
+                    }
+                }
+                fingerprints.retainOnly(ids);
+                indexFingerprints(entries);
+                flushFingerprints();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Считает отпечатки записей, которых нет в индексе. Расшифрованные ради этого пароли сразу забываются.
+     */
+    private void indexFingerprints(List<PasswordEntry> entries) {
+        List<PasswordEntry> missing = fingerprints.missing(entries);
+        if (missing.isEmpty()) {
+            return;
+        }
+        List<byte[]> computed = cryptoPipeline.map(missing, entry -> {
+            try {
+                return encryptionService.fingerprint(entry.getPassword());
+            } catch (RuntimeException e) {
+                System.err.println("Не удалось расшифровать запись " + entry.getId() + ": " + e.getMessage());
+                return null;
+            } finally {
+                entry.evictPlaintext();
+            }
+        });
+        for (int i = 0; i < missing.size(); i++) {
+            if (computed.get(i) != null) {
+                fingerprints.put(missing.get(i).getId(), computed.get(i));
+            }
+        }
+    }
+
+    private void flushFingerprints() {
+        try {
+            fingerprints.flush();
+        } catch (IOException e) {
+            System.err.println("Не удалось записать индекс отпечатков паролей: " + e.getMessage());
+        }
+    }
+
+    private void scheduleCompaction() {
+        if (compactionScheduled.compareAndSet(false, true)) {
+            compactor.execute(() -> {
+                try {
+                    compact();
+                } finally {
+                    compactionScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Переносит накопленный журнал в снимок. Новые записи в это время идут в свежий журнал и не ждут уплотнения.
+     */
+    private void compact() {
+        synchronized (snapshotLock) {
+            try {
+                if (journal.rotate()) {
+                    compactRotated(ProgressListener.NONE, NOT_CANCELLED);
+                }
+            } catch (IOException e) {
+                System.err.println("Не удалось уплотнить журнал: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Записывает снимок вместе с отложенным журналом и удаляет журнал. Вызывается под {@code snapshotLock}.
+     */
+    private boolean compactRotated(ProgressListener progress, BooleanSupplier cancelled) throws IOException {
+        Map<String, PasswordEntry> byId = new LinkedHashMap<>();
+        for (PasswordEntry entry : loadSnapshot()) {
+            byId.put(entry.getId(), entry);
+        }
+        for (Path file : journal.files()) {
+            // Текущий журнал не трогаем: он воспроизводится поверх нового снимка
+            if (!file.getFileName().toString().equals(JOURNAL_FILE_NAME)) {
+                replayJournal(file, byId);
+            }
+        }
+        if (!writeVault(defaultFile, format, new ArrayList<>(byId.values()), progress, cancelled, true)) {
+            return false;
+        }
+        journal.discardRotated();
+        return true;
+    }
+
+    /**
+     * Меняет ключ хранилища: создаёт новое поколение, переводит на него ключи всех записей снимка, журнала
+     * и резервных поколений снимка и удаляет предыдущие поколения ключа. Сами пароли не расшифровываются
+     * (кроме записанных в формате {@code v1:}).
+     * Записи, изменённые во время смены, сразу шифруются новым поколением.
+     * <p>
+     * Прерванная смена (отмена, ошибка, завершение приложения) продолжается следующим вызовом
+     * без создания ещё одного поколения, см. {@link #isKeyRotationPending()}.
+     *
+     * @return {@code false}, если не удалось записать снимок или файл ключа
+     */
+    public boolean rotateKey() {
+        return rotateKey(ProgressListener.NONE, NOT_CANCELLED);
+    }
+
+    /**
+     * Меняет ключ хранилища в фоновом потоке уплотнения; работа с записями в это время не блокируется.
+     * Отмена возвращённого future прерывает смену на границе очередного блока записей.
+     *
+     * @see #rotateKey()
+     */
+    public CompletableFuture<Boolean> rotateKeyAsync(ProgressListener progress) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        compactor.execute(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(rotateKey(progress, future::isCancelled));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Есть ли незавершённая смена ключа: в наборе остались предыдущие поколения.
+     */
+    public boolean isKeyRotationPending() {
+        return vaultKey.keyRing().isRotating();
+    }
+
+    private boolean rotateKey(ProgressListener progress, BooleanSupplier cancelled) {
+        KeyRing keyRing = vaultKey.keyRing();
+        if (!keyRing.isRotating() && !vaultKey.update(keyRing.rotate())) {
+            return false;
+        }
+        // Отложенные записи могли быть зашифрованы прежним поколением: они должны попасть в перешифровываемый журнал
+        flush();
+        synchronized (snapshotLock) {
+            try {
+                // Незавершённое уплотнение доводим до конца, чтобы текущий журнал тоже можно было перенести в снимок
+                if (journal.hasRotated() && !compactRotated(ProgressListener.NONE, NOT_CANCELLED)) {
+                    return false;
+                }
+                journal.rotate();
+                // Ключи записей переводятся на новое поколение при записи снимка, см. encryptedPasswordOf
+                if (!compactRotated(progress, cancelled)) {
+                    return false;
+                }
+                rewrapBackups(cancelled);
+            } catch (IOException e) {
+                System.err.println("Не удалось перешифровать хранилище: " + e.getMessage());
+                return false;
+            }
+        }
+        return vaultKey.update(vaultKey.keyRing().retire());
+    }
+
+    /**
+     * Применяет записи журнала к набору записей.
+     */
+    private Replay replayJournal(Path file, Map<String, PasswordEntry> byId) throws IOException {
+        int records = 0;
+        try (VaultJsonReader reader = VaultJsonReader.forRecords(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            while (reader.next()) {
+                records++;
+                if (OP_DELETE.equals(reader.op())) {
+                    byId.remove(reader.id());
+                    continue;
+                }
+                try {
+                    PasswordEntry entry = toEntry(RawEntry.of(reader));
+                    if (entry != null) {
+                        byId.put(entry.getId(), entry);
+                    }
+                } catch (Exception e) {
+                    System.err.println("Ошибка при разборе записи журнала: " + e.getMessage());
+                }
+            }
+            return new Replay(records, reader.truncated());
+        }
     }
 
     public boolean saveTo(Path path, List<PasswordEntry> entries) {
+        return saveTo(path, entries, ProgressListener.NONE, NOT_CANCELLED);
+    }
+
+    /**
+     * Записывает записи в поток в указанном формате, например в стандартный вывод. Поток не закрывается.
+     */
+    public boolean saveTo(OutputStream output, VaultFormat fileFormat, List<PasswordEntry> entries) {
+        try {
+            writeContent(output, fileFormat, entries, ProgressListener.NONE, NOT_CANCELLED, false);
+            output.flush();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Не удалось записать хранилище: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean saveTo(Path path, List<PasswordEntry> entries, ProgressListener progress,
+                           BooleanSupplier cancelled) {
         if (path == null) {
             return false;
         }
-        
-        // Проверяем, что файл имеет расширение .json
-        String fileName = path.getFileName().toString().toLowerCase();
-        if (!fileName.endsWith(".json")) {
-            System.err.println("Ошибка: файл должен иметь расширение .json");
+
+        // Формат файла определяется расширением: .json или .pmv
+        Optional<VaultFormat> fileFormat = VaultFormat.fromPath(path);
+        if (fileFormat.isEmpty()) {
+            System.err.println("Ошибка: файл должен иметь расширение .json или .pmv");
             return false;
         }
-        
+        return writeVault(path, fileFormat.get(), entries, progress, cancelled, false);
+    }
+
+    /**
+     * Записывает файл атомарно: файл либо заменяется целиком, либо остаётся прежним.
+     *
+     * @param snapshot записать как снимок хранилища — с контрольной суммой и сдвигом поколений
+     */
+    private boolean writeVault(Path path, VaultFormat fileFormat, List<PasswordEntry> entries,
+                               ProgressListener progress, BooleanSupplier cancelled, boolean snapshot) {
         try {
-            // Создаем директорию, если её нет
-            Path parent = path.getParent();
-            if (parent != null) {
-                Files.createDirectories(parent);
-            }
-            
-            String jsonContent = toJson(entries);
-            
-            // Проверяем, что JSON не пустой
-            if (jsonContent == null || jsonContent.trim().isEmpty()) {
-                System.err.println("Ошибка: сгенерированный JSON пуст");
-                return false;
-            }
-            
-            // Сохраняем файл в формате JSON
-            Files.writeString(path, jsonContent, StandardCharsets.UTF_8);
-            
-            // Проверяем, что файл действительно создан
-            if (!Files.exists(path)) {
-                System.err.println("Ошибка: файл не был создан по пути: " + path);
-                return false;
+            // Файл пишется потоком, блок за блоком: содержимое целиком в памяти не собирается
+            VaultSnapshots.Content content = out -> writeContent(out, fileFormat, entries, progress, cancelled,
+                    snapshot);
+            if (snapshot) {
+                snapshots.write(content);
+            } else {
+                VaultSnapshots.writeAtomically(path, content);
             }
-            
             return true;
+        } catch (CancellationException e) {
+            throw e;
         } catch (IOException e) {
             System.err.println("Не удалось сохранить хранилище: " + e.getMessage());
             e.printStackTrace();
@@ -107,147 +879,405 @@ public final class PasswordRepository {
         }
     }
 
+    /**
+     * @param indexed дописать индекс двоичного формата; индекс нужен только снимку, который читает {@link MappedVault}
+     */
+    private void writeContent(OutputStream out, VaultFormat fileFormat, List<PasswordEntry> entries,
+                              ProgressListener progress, BooleanSupplier cancelled, boolean indexed)
+            throws IOException {
+        List<PasswordEntry> all = entries == null ? List.of() : entries;
+        if (fileFormat == VaultFormat.BINARY) {
+            writeBinary(out, all, progress, cancelled, indexed);
+        } else {
+            writeJson(out, all, progress, cancelled);
+        }
+    }
+
+    /**
+     * Загружает хранилище в фоновом потоке.
+     */
+    public CompletableFuture<List<PasswordEntry>> loadAsync() {
+        return submit(cancelled -> load());
+    }
+
+    /**
+     * Читает файл в фоновом потоке. Отмена возвращённого future прерывает чтение на границе очередного блока.
+     */
+    public CompletableFuture<Optional<List<PasswordEntry>>> loadFromAsync(Path path, ProgressListener progress) {
+        return submit(cancelled -> loadFrom(path, progress, cancelled));
+    }
+
+    /**
+     * Импортирует файл в фоновом потоке. При отмене уже записанные в журнал блоки остаются в хранилище.
+     *
+     * @param onAdded вызывается в фоновом потоке
+     * @see #importFrom(Path, Set, Consumer)
+     */
+    public CompletableFuture<OptionalLong> importFromAsync(Path path, Set<String> knownIds, ProgressListener progress,
+                                                           Consumer<List<PasswordEntry>> onAdded) {
+        return submit(cancelled -> importFrom(path, knownIds, onAdded, progress, cancelled));
+    }
+
+    public CompletableFuture<Optional<MappedVault>> openMappedAsync(int minEntries) {
+        return submit(cancelled -> openMapped(minEntries));
+    }
+
+    public CompletableFuture<Void> saveAsync(List<PasswordEntry> entries) {
+        return submit(cancelled -> {
+            save(entries);
+            return null;
+        });
+    }
+
+    /**
+     * Сохраняет записи в фоновом потоке. При отмене файл не изменяется.
+     */
+    public CompletableFuture<Boolean> saveToAsync(Path path, List<PasswordEntry> entries, ProgressListener progress) {
+        return submit(cancelled -> saveTo(path, entries, progress, cancelled));
+    }
+
+    /**
+     * Ставит запись в журнал из потока ввода-вывода.
+     *
+     * @return завершается, когда запись сброшена на диск или её не удалось записать, см. {@link #recordAdd}
+     */
+    public CompletableFuture<Boolean> recordAddAsync(PasswordEntry entry) {
+        return submit(cancelled -> recordAdd(entry)).thenCompose(written -> written);
+    }
+
+    /**
+     * Создаёт запись ({@link #create}) и ставит её в журнал из потока ввода-вывода: пароль шифруется
+     * не в вызывающем потоке.
+     *
+     * @return завершается созданной записью, когда она сброшена на диск, или ошибкой, если её не удалось записать
+     */
+    public CompletableFuture<PasswordEntry> recordAddAsync(String service, String username, String password,
+                                                           String notes) {
+        return submit(cancelled -> {
+            PasswordEntry entry = create(service, username, password, notes);
+            return recordAdd(entry).thenCompose(written -> written
+                    ? CompletableFuture.completedFuture(entry)
+                    : CompletableFuture.<PasswordEntry>failedFuture(new IOException("Запись не записана на диск")));
+        }).thenCompose(added -> added);
+    }
+
+    public CompletableFuture<Boolean> recordUpdateAsync(PasswordEntry entry) {
+        return submit(cancelled -> recordUpdate(entry)).thenCompose(written -> written);
+    }
+
+    public CompletableFuture<Boolean> recordDeleteAsync(String entryId) {
+        return submit(cancelled -> recordDelete(entryId)).thenCompose(written -> written);
+    }
+
+    public CompletableFuture<List<List<String>>> findReusedAsync(List<PasswordEntry> entries) {
+        return submit(cancelled -> findReused(entries));
+    }
+
+    /**
+     * Завершается, когда фоновые потоки хранилища выполнят всё, что поставлено в очередь до вызова.
+     * Отменённый future завершается сразу, а сама операция доходит до границы блока и только потом
+     * останавливается: этот future позволяет дождаться, пока она действительно перестанет писать на диск.
+     */
+    public CompletableFuture<Void> afterQueued() {
+        CompletableFuture<Void> io = new CompletableFuture<>();
+        CompletableFuture<Void> compaction = new CompletableFuture<>();
+        ioExecutor.execute(() -> io.complete(null));
+        compactor.execute(() -> compaction.complete(null));
+        return CompletableFuture.allOf(io, compaction);
+    }
+
+    /**
+     * Выполняет операцию в потоке ввода-вывода. Операции выполняются по одной в порядке вызова.
+     */
+    private <T> CompletableFuture<T> submit(Function<BooleanSupplier, T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        ioExecutor.execute(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(task.apply(future::isCancelled));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Создаёт запись с уже зашифрованным паролем: открытый пароль не остаётся в списке записей на всю сессию,
+     * а при обращении расшифровывается через ограниченный кэш, как у загруженных записей.
+     */
     public PasswordEntry create(String service,
                                 String username,
                                 String password,
                                 String notes) {
-        // Создаем запись с расшифрованным паролем (шифрование происходит при сохранении)
-        return new PasswordEntry(generateId(), service, username, password, notes, LocalDateTime.now());
+        if (password.isEmpty()) {
+            return new PasswordEntry(generateId(), service, username, password, notes, LocalDateTime.now());
+        }
+        return PasswordEntry.encrypted(generateId(), service, username, encryptionService.encrypt(password), notes,
+                LocalDateTime.now(), decryptor);
     }
 
     private String generateId() {
         return Long.toHexString(System.nanoTime());
     }
 
-    private String toJson(List<PasswordEntry> entries) {
-        if (entries == null || entries.isEmpty()) {
-            return "[]";
+    private void writeJson(OutputStream out, List<PasswordEntry> entries, ProgressListener progress,
+                           BooleanSupplier cancelled) throws IOException {
+        Writer json = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+        if (entries.isEmpty()) {
+            json.write("[]");
+            json.flush();
+            return;
         }
-        
-        StringBuilder json = new StringBuilder("[\n");
-        for (int i = 0; i < entries.size(); i++) {
-            PasswordEntry entry = entries.get(i);
-            if (entry == null) {
-                continue;
+
+        json.write("[\n");
+        boolean first = true;
+        for (int from = 0; from < entries.size(); from += WRITE_CHUNK_SIZE) {
+            checkCancelled(cancelled, progress, from, entries.size());
+            List<PasswordEntry> chunk = entries.subList(from, Math.min(entries.size(), from + WRITE_CHUNK_SIZE));
+            // Шифруем новые пароли блока параллельно, порядок записей сохраняется
+            List<String> encryptedPasswords = cryptoPipeline.map(chunk,
+                    entry -> entry == null ? null : encryptedPasswordOf(entry));
+            for (int i = 0; i < chunk.size(); i++) {
+                PasswordEntry entry = chunk.get(i);
+                if (entry == null) {
+                    continue;
+                }
+                if (!first) {
+                    json.write(",\n");
+                }
+                first = false;
+                json.write("  {\n");
+                json.write("    \"id\": \"" + escapeJson(entry.getId()) + "\",\n");
+                json.write("    \"service\": \"" + escapeJson(entry.getService()) + "\",\n");
+                json.write("    \"username\": \"" + escapeJson(entry.getUsername()) + "\",\n");
+                json.write("    \"password\": \"" + escapeJson(encryptedPasswords.get(i)) + "\",\n");
+                json.write("    \"notes\": \"" + escapeJson(entry.getNotes()) + "\",\n");
+                json.write("    \"createdAt\": \"" + entry.getCreatedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+                        + "\"\n");
+                json.write("  }");
             }
-            
-            // Всегда шифруем пароль перед сохранением в JSON
-            String passwordToSave = entry.getPassword() != null && !entry.getPassword().isEmpty()
-                    ? encryptionService.encrypt(entry.getPassword())
-                    : entry.getPassword();
-            
-            json.append("  {\n");
-            json.append("    \"id\": \"").append(escapeJson(entry.getId())).append("\",\n");
-            json.append("    \"service\": \"").append(escapeJson(entry.getService())).append("\",\n");
-            json.append("    \"username\": \"").append(escapeJson(entry.getUsername())).append("\",\n");
-            json.append("    \"password\": \"").append(escapeJson(passwordToSave)).append("\",\n");
-            json.append("    \"notes\": \"").append(escapeJson(entry.getNotes())).append("\",\n");
-            json.append("    \"createdAt\": \"").append(entry.getCreatedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)).append("\"\n");
-            json.append("  }");
-            if (i < entries.size() - 1) {
-                json.append(",");
-            }
-            json.append("\n");
-        }
-        json.append("]");
-        return json.toString();
+        }
+        json.write("\n]");
+        json.flush();
+        progress.onProgress(entries.size(), entries.size());
     }
 
-    private List<PasswordEntry> parseJson(String json) {
-        List<PasswordEntry> entries = new ArrayList<>();
-        if (json == null || json.trim().isEmpty()) {
-            return entries;
+    private void writeBinary(OutputStream out, List<PasswordEntry> entries, ProgressListener progress,
+                             BooleanSupplier cancelled, boolean indexed) throws IOException {
+        int count = 0;
+        for (PasswordEntry entry : entries) {
+            if (entry != null) {
+                count++;
+            }
         }
 
-        // Улучшенный парсер JSON для массива объектов
-        // Ищем начало массива
-        int startIdx = json.indexOf('[');
-        if (startIdx == -1) {
-            return entries;
+        VaultBinaryWriter writer = new VaultBinaryWriter(new BufferedOutputStream(out, WRITE_BUFFER_SIZE));
+        writer.writeHeader(count, indexed);
+        long[] offsets = indexed ? new long[count] : null;
+        String[] ids = indexed ? new String[count] : null;
+        int written = 0;
+        for (int from = 0; from < entries.size(); from += WRITE_CHUNK_SIZE) {
+            checkCancelled(cancelled, progress, from, entries.size());
+            List<PasswordEntry> chunk = entries.subList(from, Math.min(entries.size(), from + WRITE_CHUNK_SIZE));
+            List<byte[]> encryptedPasswords = cryptoPipeline.map(chunk,
+                    entry -> entry == null ? null : encryptionService.toBinary(encryptedPasswordOf(entry)));
+            for (int i = 0; i < chunk.size(); i++) {
+                PasswordEntry entry = chunk.get(i);
+                if (entry == null) {
+                    continue;
+                }
+                long createdAt = entry.getCreatedAt().toInstant(ZoneOffset.UTC).toEpochMilli();
+                long offset = writer.writeEntry(entry.getId(), entry.getService(), entry.getUsername(),
+                        entry.getNotes(), createdAt, encryptedPasswords.get(i));
+                if (indexed) {
+                    offsets[written] = offset;
+                    ids[written] = entry.getId();
+                }
+                written++;
+            }
+        }
+        if (indexed) {
+            int[] byId = IntStream.range(0, count).boxed()
+                    .sorted(Comparator.comparing(i -> ids[i]))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            writer.writeIndex(offsets, byId);
         }
+        writer.flush();
+        progress.onProgress(entries.size(), entries.size());
+    }
 
-        int pos = startIdx + 1;
-        while (pos < json.length()) {
-            // Пропускаем пробелы и переносы строк
-            while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
-                pos++;
-            }
-            
-            if (pos >= json.length() || json.charAt(pos) == ']') {
-                break;
-            }
+    private static void checkCancelled(BooleanSupplier cancelled, ProgressListener progress, long done, long total) {
+        if (cancelled.getAsBoolean()) {
+            throw new CancellationException("Сохранение отменено");
+        }
+        progress.onProgress(done, total);
+    }
 
-            // Пропускаем запятую
-            if (json.charAt(pos) == ',') {
-                pos++;
-                continue;
+    /**
+     * Переводит на текущее поколение ключа предыдущие поколения снимка и снимки в другом формате. Без этого
+     * после удаления прежних поколений ключа резервные снимки читались бы, но ни один пароль в них не расшифровался.
+     * Снимок, который не проходит проверку или не читается, остаётся как есть: восстановиться из него и так нельзя.
+     * Вызывается под {@code snapshotLock}.
+     */
+    private void rewrapBackups(BooleanSupplier cancelled) throws IOException {
+        for (VaultFormat fileFormat : VaultFormat.values()) {
+            VaultSnapshots backups = fileFormat == format
+                    ? snapshots
+                    : new VaultSnapshots(snapshotFile(baseDir, fileFormat), SNAPSHOT_GENERATIONS);
+            for (Path backup : backups.candidates()) {
+                if (backup.equals(defaultFile)) {
+                    continue;
+                }
+                if (!backups.verify(backup)) {
+                    System.err.println("Снимок не перешифрован, не совпадает контрольная сумма: "
+                            + backup.getFileName());
+                    continue;
+                }
+                List<PasswordEntry> entries;
+                try {
+                    entries = readEntries(fileFormat, Files.newInputStream(backup), () -> {
+                    });
+                } catch (IOException e) {
+                    System.err.println("Снимок не перешифрован: " + backup.getFileName() + ": " + e.getMessage());
+                    continue;
+                }
+                try {
+                    VaultSnapshots.replace(backup,
+                            out -> writeContent(out, fileFormat, entries, ProgressListener.NONE, cancelled, true));
+                } catch (CancellationException e) {
+                    throw e;
+                } catch (RuntimeException e) {
+                    // Например, снимок старше уже удалённого поколения ключа
+                    System.err.println("Снимок не перешифрован: " + backup.getFileName() + ": " + e.getMessage());
+                }
             }
+        }
+    }
 
-            // Ищем начало объекта
-            if (json.charAt(pos) == '{') {
-                int objStart = pos;
-                int braceCount = 0;
-                boolean inString = false;
-                boolean escaped = false;
-                
-                // Находим конец объекта, учитывая экранированные кавычки
-                for (int i = objStart; i < json.length(); i++) {
-                    char c = json.charAt(i);
-                    if (escaped) {
-                        escaped = false;
-                        continue;
-                    }
-                    if (c == '\\') {
-                        escaped = true;
-                        continue;
-                    }
-                    if (c == '"') {
-                        inString = !inString;
-                        continue;
+    /**
+     * Шифротекст для записи на диск: неизменённые записи сохраняются с исходным шифротекстом
+     * (во время смены ключа — с перешифрованным ключом записи), шифруются только новые пароли.
+     */
+    private String encryptedPasswordOf(PasswordEntry entry) {
+        String encrypted = entry.getEncryptedPassword();
+        if (encrypted != null) {
+            return encryptionService.rewrap(encrypted);
+        }
+        String password = entry.getPassword();
+        return password.isEmpty() ? password : encryptionService.encrypt(password);
+    }
+
+    private String toJournalRecord(String op, PasswordEntry entry) {
+        String password = encryptedPasswordOf(entry);
+        StringBuilder json = new StringBuilder(192);
+        json.append("{\"op\":\"").append(op).append("\"");
+        json.append(",\"id\":\"").append(escapeJson(entry.getId())).append("\"");
+        json.append(",\"service\":\"").append(escapeJson(entry.getService())).append("\"");
+        json.append(",\"username\":\"").append(escapeJson(entry.getUsername())).append("\"");
+        json.append(",\"password\":\"").append(escapeJson(password)).append("\"");
+        json.append(",\"notes\":\"").append(escapeJson(entry.getNotes())).append("\"");
+        json.append(",\"createdAt\":\"").append(entry.getCreatedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)).append("\"");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    private List<PasswordEntry> readEntries(VaultFormat fileFormat, InputStream input, Runnable onChunk)
+            throws IOException {
+        List<PasswordEntry> entries = new ArrayList<>();
+        readChunks(fileFormat, input, chunk -> {
+            entries.addAll(chunk);
+            onChunk.run();
+        });
+        return entries;
+    }
+
+    /**
+     * Читает записи блоками по {@value #READ_CHUNK_SIZE} и передаёт каждый блок по мере готовности.
+     * Разбор идёт последовательно, а расшифровка и сборка записей блока — параллельно.
+     */
+    private void readChunks(VaultFormat fileFormat, InputStream input, Consumer<List<PasswordEntry>> onChunk)
+            throws IOException {
+        List<RawEntry> chunk = new ArrayList<>(READ_CHUNK_SIZE);
+        if (fileFormat == VaultFormat.BINARY) {
+            try (VaultBinaryReader reader = new VaultBinaryReader(new BufferedInputStream(input, 64 * 1024))) {
+                reader.readHeader();
+                while (reader.next()) {
+                    chunk.add(RawEntry.of(reader.record(), encryptionService));
+                    if (chunk.size() == READ_CHUNK_SIZE) {
+                        onChunk.accept(convertChunk(chunk));
+                        chunk.clear();
                     }
-                    if (!inString) {
-                        if (c == '{') {
-                            braceCount++;
-                        } else if (c == '}') {
-                            braceCount--;
-                            if (braceCount == 0) {
-                                String entryJson = json.substring(objStart, i + 1);
-                                pos = i + 1;
-                                
-                                try {
-                                    PasswordEntry entry = parseEntry(entryJson);
-                                    if (entry != null) {
-                                        entries.add(entry);
-                                    }
-                                } catch (Exception e) {
-                                    System.err.println("Ошибка при парсинге записи: " + e.getMessage());
-                                }
-                                break;
-                            }
-                        }
+                }
+            }
+        } else {
+            Reader source = new InputStreamReader(input, StandardCharsets.UTF_8.newDecoder());
+            try (VaultJsonReader reader = new VaultJsonReader(source)) {
+                while (reader.next()) {
+                    chunk.add(RawEntry.of(reader));
+                    if (chunk.size() == READ_CHUNK_SIZE) {
+                        onChunk.accept(convertChunk(chunk));
+                        chunk.clear();
                     }
                 }
-            } else {
-                pos++;
             }
         }
+        if (!chunk.isEmpty()) {
+            onChunk.accept(convertChunk(chunk));
+        }
+    }
 
+    private List<PasswordEntry> convertChunk(List<RawEntry> chunk) {
+        List<PasswordEntry> entries = new ArrayList<>(chunk.size());
+        for (PasswordEntry entry : cryptoPipeline.map(chunk, this::toEntryOrNull)) {
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
         return entries;
     }
 
-    private PasswordEntry parseEntry(String entryJson) {
-        String id = extractJsonValue(entryJson, "id");
-        String service = extractJsonValue(entryJson, "service");
-        String username = extractJsonValue(entryJson, "username");
-        String password = extractJsonValue(entryJson, "password");
-        String notes = extractJsonValue(entryJson, "notes");
-        String createdAtStr = extractJsonValue(entryJson, "createdAt");
+    private static InputStream notClosing(InputStream input) {
+        return new FilterInputStream(input) {
+            @Override
+            public void close() {
+                // Поток принадлежит вызывающему
+            }
+        };
+    }
 
+    private PasswordEntry toEntryOrNull(RawEntry raw) {
+        try {
+            return toEntry(raw);
+        } catch (Exception e) {
+            System.err.println("Ошибка при парсинге записи: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private PasswordEntry toEntry(RawEntry raw) {
+        String id = raw.id();
+        String service = raw.service();
         if (id.isEmpty() || service.isEmpty()) {
             return null;
         }
 
-        // Расшифровываем пароль (если он зашифрован)
+        LocalDateTime createdAt = raw.createdAt() != null
+                ? LocalDateTime.parse(raw.createdAt(), DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+                : LocalDateTime.ofInstant(Instant.ofEpochMilli(raw.createdAtMillis()), ZoneOffset.UTC);
+        String password = raw.password();
+        if (encryptionService.isCurrentFormat(password)) {
+            // Пароль расшифруется только при обращении к нему
+            return PasswordEntry.encrypted(id, service, raw.username(), password, raw.notes(), createdAt, decryptor);
+        }
+
+        // Старый формат или открытый текст: расшифровываем сразу, при сохранении пароль будет перешифрован
+        if (!password.isEmpty()) {
+            migrationPending = true;
+        }
         String decryptedPassword;
         try {
             decryptedPassword = encryptionService.decrypt(password);
@@ -255,47 +1285,7 @@ public final class PasswordRepository {
             // Если расшифровка не удалась, возможно пароль уже расшифрован
             decryptedPassword = password;
         }
-
-        LocalDateTime createdAt = LocalDateTime.parse(createdAtStr, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-        return new PasswordEntry(id, service, username, decryptedPassword, notes, createdAt);
-    }
-
-    private String extractJsonValue(String json, String key) {
-        // Ищем ключ с кавычками
-        String keyPattern = "\"" + Pattern.quote(key) + "\"\\s*:\\s*\"";
-        Pattern pattern = Pattern.compile(keyPattern);
-        Matcher matcher = pattern.matcher(json);
-        
-        if (matcher.find()) {
-            int start = matcher.end();
-            StringBuilder value = new StringBuilder();
-            boolean escaped = false;
-            
-            // Читаем значение до закрывающей кавычки, учитывая экранирование
-            for (int i = start; i < json.length(); i++) {
-                char c = json.charAt(i);
-                if (escaped) {
-                    if (c == 'n') {
-                        value.append('\n');
-                    } else if (c == 'r') {
-                        value.append('\r');
-                    } else if (c == 't') {
-                        value.append('\t');
-                    } else {
-                        value.append(c);
-                    }
-                    escaped = false;
-                } else if (c == '\\') {
-                    escaped = true;
-                } else if (c == '"') {
-                    break;
-                } else {
-                    value.append(c);
-                }
-            }
-            return value.toString();
-        }
-        return "";
+        return new PasswordEntry(id, service, raw.username(), decryptedPassword, raw.notes(), createdAt);
     }
 
     private String escapeJson(String str) {
@@ -309,15 +1299,115 @@ public final class PasswordRepository {
                 .replace("\t", "\\t");
     }
 
-    private String unescapeJson(String str) {
-        if (str == null) {
-            return "";
+    /**
+     * Поля записи в том виде, в котором они прочитаны из файла.
+     * Время создания — строка ISO из JSON либо, если строки нет, миллисекунды от эпохи из двоичного формата.
+     */
+    private record RawEntry(String id, String service, String username, String password, String notes,
+                            String createdAt, long createdAtMillis) {
+
+        static RawEntry of(VaultJsonReader reader) {
+            return new RawEntry(reader.id(), reader.service(), reader.username(), reader.password(),
+                    reader.notes(), reader.createdAt(), 0);
+        }
+
+        static RawEntry of(VaultBinaryRecord record, EncryptionService encryptionService) {
+            return new RawEntry(record.id(), record.service(), record.username(),
+                    encryptionService.fromBinary(record.password()), record.notes(), null, record.createdAtMillis());
+        }
+    }
+
+    /**
+     * Дописывает в журнал новые записи импортируемого файла, блок за блоком.
+     */
+    private final class Importer implements Consumer<List<PasswordEntry>> {
+
+        private final Set<String> knownIds;
+        /**
+         * Id, уже добавленные этим импортом: повтор id в файле пропускается, как в {@code EntryStore.merge}.
+         */
+        private final Set<String> importedIds = new HashSet<>();
+        private final Consumer<List<PasswordEntry>> onAdded;
+        private long added;
+
+        Importer(Set<String> knownIds, Consumer<List<PasswordEntry>> onAdded) {
+            this.knownIds = knownIds;
+            this.onAdded = onAdded;
+        }
+
+        @Override
+        public void accept(List<PasswordEntry> chunk) {
+            List<PasswordEntry> fresh = new ArrayList<>();
+            for (PasswordEntry entry : chunk) {
+                if (!knownIds.contains(entry.getId()) && importedIds.add(entry.getId())) {
+                    fresh.add(entry);
+                }
+            }
+            if (fresh.isEmpty()) {
+                return;
+            }
+            List<String> records = cryptoPipeline.map(fresh, entry -> toJournalRecord(OP_ADD, entry));
+            synchronized (flushLock) {
+                // Сначала отложенные изменения, чтобы журнал сохранил порядок операций
+                if (!flushPending()) {
+                    throw new UncheckedIOException(new IOException("Не удалось записать отложенные изменения"));
+                }
+                try {
+                    // Уплотнение откладывается до конца импорта, чтобы не перечитывать хранилище после каждого блока
+                    journal.append(records);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            added += fresh.size();
+            onAdded.accept(fresh);
+        }
+
+        OptionalLong finish() {
+            if (journal.records() >= COMPACTION_THRESHOLD) {
+                scheduleCompaction();
+            }
+            return OptionalLong.of(added);
         }
-        return str.replace("\\\"", "\"")
-                .replace("\\\\", "\\")
-                .replace("\\n", "\n")
-                .replace("\\r", "\r")
-                .replace("\\t", "\t");
     }
-}
 
+    /**
+     * Итог воспроизведения одного файла журнала.
+     */
+    private record Replay(int records, boolean truncated) {
+    }
+
+    /**
+     * Поток, который считает прочитанные байты для отчёта о ходе загрузки.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long count() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
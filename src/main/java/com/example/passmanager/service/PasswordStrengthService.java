@@ -1,48 +1,141 @@
 package com.example.passmanager.service;
 
+import com.example.passmanager.model.PasswordEntry;
 import com.example.passmanager.model.PasswordStrength;
+import com.example.passmanager.model.StrengthReport;
 
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 
 /**
- * Оценивает сложность паролей.
+ * Оценивает сложность паролей по энтропии: сколько бит нужно угадать атакующему,
+ * который знает распространённые пароли и типичные шаблоны (см. {@link EntropyEstimator}).
+ * Оценка вызывается на каждое нажатие клавиши, поэтому она не выделяет памяти и укладывается в десятки микросекунд.
  */
 public final class PasswordStrengthService {
 
-    private static final Pattern UPPER = Pattern.compile(".*[A-Z].*");
-    private static final Pattern LOWER = Pattern.compile(".*[a-z].*");
-    private static final Pattern DIGIT = Pattern.compile(".*\\d.*");
-    private static final Pattern SYMBOL = Pattern.compile(".*[^A-Za-z0-9].*");
+    /**
+     * Нижние границы уровней в битах: {@code WEAK}, {@code MEDIUM}, {@code STRONG}, {@code VERY_STRONG}.
+     */
+    private static final double[] THRESHOLDS = {28, 40, 60, 80};
+    private static final PasswordStrength[] LEVELS = PasswordStrength.values();
+
+    private final EntropyEstimator estimator;
+
+    public PasswordStrengthService() {
+        this.estimator = new EntropyEstimator();
+    }
 
     public PasswordStrength evaluate(String password) {
+        return levelOf(entropy(password));
+    }
+
+    /**
+     * Оценка энтропии пароля в битах; для пустого пароля — ноль.
+     */
+    public double entropy(String password) {
         if (password == null || password.isBlank()) {
-            return PasswordStrength.VERY_WEAK;
+            return 0;
         }
+        return estimator.bits(password);
+    }
 
-        int score = 0;
-        if (password.length() >= 8) {
-            score++;
+    /**
+     * Оценивает все записи параллельно и возвращает распределение по уровням надёжности
+     * и не более {@code weakestLimit} самых слабых записей.
+     * Пароли, расшифрованные ради проверки, сразу забываются, чтобы аудит большого хранилища
+     * не оставлял их в памяти.
+     */
+    public StrengthReport audit(List<PasswordEntry> entries, int weakestLimit) {
+        if (weakestLimit < 0) {
+            throw new IllegalArgumentException("Число слабых записей не может быть отрицательным: " + weakestLimit);
         }
-        if (password.length() >= 12) {
-            score++;
+        Audit audit = CryptoPipeline.shared().reduce(entries, () -> new Audit(weakestLimit), Audit::add, Audit::merge);
+        return audit.toReport();
+    }
+
+    private static PasswordStrength levelOf(double bits) {
+        int level = 0;
+        while (level < THRESHOLDS.length && bits >= THRESHOLDS[level]) {
+            level++;
         }
-        if (UPPER.matcher(password).matches() && LOWER.matcher(password).matches()) {
-            score++;
+        return LEVELS[level];
+    }
+
+    /**
+     * Промежуточный результат аудита для одной части списка.
+     * Слабейшие записи хранятся в куче, на вершине которой — самая сильная из них.
+     */
+    private final class Audit {
+
+        private static final Comparator<Scored> WEAKEST_FIRST =
+                Comparator.comparingDouble(Scored::bits);
+
+        private final int limit;
+        private final long[] counts = new long[PasswordStrength.values().length];
+        private final PriorityQueue<Scored> weakest;
+
+        Audit(int limit) {
+            this.limit = limit;
+            this.weakest = new PriorityQueue<>(Math.max(1, Math.min(limit, 1024)) + 1, WEAKEST_FIRST.reversed());
+        }
+
+        void add(PasswordEntry entry) {
+            if (entry == null) {
+                return;
+            }
+            double bits = entropy(entry.getPassword());
+            entry.evictPlaintext();
+            counts[levelOf(bits).ordinal()]++;
+            if (limit > 0 && (weakest.size() < limit || bits < weakest.peek().bits())) {
+                offer(new Scored(entry, bits));
+            }
+        }
+
+        void merge(Audit other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            for (Scored scored : other.weakest) {
+                offer(scored);
+            }
         }
-        if (DIGIT.matcher(password).matches()) {
-            score++;
+
+        private void offer(Scored scored) {
+            if (limit == 0) {
+                return;
+            }
+            if (weakest.size() < limit) {
+                weakest.add(scored);
+            } else if (scored.bits() < weakest.peek().bits()) {
+                weakest.poll();
+                weakest.add(scored);
+            }
         }
-        if (SYMBOL.matcher(password).matches()) {
-            score++;
+
+        StrengthReport toReport() {
+            Map<PasswordStrength, Long> histogram = new EnumMap<>(PasswordStrength.class);
+            long total = 0;
+            for (PasswordStrength strength : PasswordStrength.values()) {
+                histogram.put(strength, counts[strength.ordinal()]);
+                total += counts[strength.ordinal()];
+            }
+            List<Scored> sorted = new ArrayList<>(weakest);
+            sorted.sort(WEAKEST_FIRST);
+            List<StrengthReport.WeakEntry> weakEntries = new ArrayList<>(sorted.size());
+            for (Scored scored : sorted) {
+                PasswordEntry entry = scored.entry();
+                weakEntries.add(new StrengthReport.WeakEntry(entry.getId(), entry.getService(), entry.getUsername(),
+                        levelOf(scored.bits()), scored.bits()));
+            }
+            return new StrengthReport(total, histogram, weakEntries);
         }
+    }
 
-        return switch (score) {
-            case 0, 1 -> PasswordStrength.VERY_WEAK;
-            case 2 -> PasswordStrength.WEAK;
-            case 3 -> PasswordStrength.MEDIUM;
-            case 4 -> PasswordStrength.STRONG;
-            default -> PasswordStrength.VERY_STRONG;
-        };
+    private record Scored(PasswordEntry entry, double bits) {
     }
 }
-
@@ -0,0 +1,192 @@
+package com.example.passmanager.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * Ограниченный кэш расшифрованных паролей.
+ * <p>
+ * Пароли хранятся в массивах {@code char[]}, а не в строках, и затираются нулями при вытеснении. Кэш держит не больше
+ * {@code maxEntries} паролей: при переполнении вытесняется пароль, к которому дольше всего не обращались (LRU).
+ * Пароль, к которому не обращались дольше {@code idleTimeout}, затирает фоновый таймер, даже если к кэшу
+ * больше никто не обращается. Ключ — шифротекст: он однозначно определяет пароль и не раскрывает его.
+ * <p>
+ * Ограничения касаются только самого кэша. {@link #get} возвращает строку-копию, которую нельзя затереть:
+ * вызывающий код не должен её сохранять, и она живёт до сборки мусора.
+ */
+public final class PlaintextCache implements AutoCloseable {
+
+    private final Map<String, Slot> slots = new LinkedHashMap<>(16, 0.75f, true);
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "plaintext-cache-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Запланированная очистка устаревших паролей; {@code null}, пока кэш пуст или время хранения не ограничено.
+     */
+    private ScheduledFuture<?> scheduledPurge;
+    private int maxEntries;
+    private long idleTimeoutNanos;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxEntries  сколько паролей держать одновременно; ноль отключает кэш
+     * @param idleTimeout сколько хранить пароль без обращений; ноль — без ограничения по времени
+     */
+    public PlaintextCache(int maxEntries, Duration idleTimeout) {
+        configure(maxEntries, idleTimeout);
+    }
+
+    public synchronized void configure(int maxEntries, Duration idleTimeout) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Размер кэша не может быть отрицательным: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.idleTimeoutNanos = idleTimeout == null ? 0 : idleTimeout.toNanos();
+        if (scheduledPurge != null) {
+            scheduledPurge.cancel(false);
+            scheduledPurge = null;
+        }
+        purge(System.nanoTime());
+        schedulePurge();
+    }
+
+    /**
+     * Пароль из кэша или, при промахе, расшифрованный {@code decryptor} и помещённый в кэш.
+     * Расшифровка выполняется вне блокировки, поэтому кэш не мешает параллельной расшифровке.
+     */
+    public String get(String encryptedPassword, UnaryOperator<String> decryptor) {
+        synchronized (this) {
+            long now = System.nanoTime();
+            purge(now);
+            Slot slot = slots.get(encryptedPassword);
+            if (slot != null) {
+                hits++;
+                slot.accessedAt = now;
+                return new String(slot.plaintext);
+            }
+            misses++;
+        }
+        String plaintext = decryptor.apply(encryptedPassword);
+        synchronized (this) {
+            if (maxEntries > 0 && !slots.containsKey(encryptedPassword)) {
+                slots.put(encryptedPassword, new Slot(plaintext.toCharArray(), System.nanoTime()));
+                purge(System.nanoTime());
+                schedulePurge();
+            }
+        }
+        return plaintext;
+    }
+
+    /**
+     * Затирает и удаляет пароль, например после разового чтения при проверке всех записей.
+     */
+    public synchronized void evict(String encryptedPassword) {
+        Slot slot = slots.remove(encryptedPassword);
+        if (slot != null) {
+            slot.wipe();
+        }
+    }
+
+    /**
+     * Затирает все пароли. Вызывается при закрытии хранилища.
+     */
+    public synchronized void clear() {
+        for (Slot slot : slots.values()) {
+            slot.wipe();
+        }
+        evictions += slots.size();
+        slots.clear();
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, slots.size());
+    }
+
+    /**
+     * Затирает все пароли и останавливает таймер очистки.
+     */
+    @Override
+    public synchronized void close() {
+        clear();
+        timer.shutdownNow();
+    }
+
+    /**
+     * Планирует очистку на момент, когда устареет самый давний пароль. Таймер срабатывает, только пока
+     * в кэше есть пароли; после срабатывания он перепланирует себя на следующий устаревающий пароль.
+     */
+    private void schedulePurge() {
+        if (scheduledPurge != null || idleTimeoutNanos == 0 || slots.isEmpty() || timer.isShutdown()) {
+            return;
+        }
+        long eldest = slots.values().iterator().next().accessedAt;
+        long delay = Math.max(0, eldest + idleTimeoutNanos - System.nanoTime());
+        scheduledPurge = timer.schedule(this::purgeExpired, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private synchronized void purgeExpired() {
+        scheduledPurge = null;
+        purge(System.nanoTime());
+        schedulePurge();
+    }
+
+    /**
+     * Вытесняет пароли сверх размера и устаревшие. В порядке доступа первыми идут самые давние,
+     * поэтому обход останавливается на первом свежем пароле.
+     */
+    private void purge(long now) {
+        Iterator<Slot> iterator = slots.values().iterator();
+        int excess = slots.size() - maxEntries;
+        while (iterator.hasNext()) {
+            Slot slot = iterator.next();
+            boolean expired = idleTimeoutNanos > 0 && now - slot.accessedAt >= idleTimeoutNanos;
+            if (excess <= 0 && !expired) {
+                break;
+            }
+            slot.wipe();
+            iterator.remove();
+            evictions++;
+            excess--;
+        }
+    }
+
+    /**
+     * Счётчики кэша с момента создания.
+     *
+     * @param evictions пароли, вытесненные по размеру или времени, и затёртые при очистке
+     */
+    public record Stats(long hits, long misses, long evictions, int size) {
+
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private static final class Slot {
+
+        private final char[] plaintext;
+        private long accessedAt;
+
+        Slot(char[] plaintext, long accessedAt) {
+            this.plaintext = plaintext;
+            this.accessedAt = accessedAt;
+        }
+
+        void wipe() {
+            Arrays.fill(plaintext, '\0');
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.passmanager.service;
+
+/**
+ * Получает сведения о ходе длительной операции с хранилищем.
+ * Вызывается из фонового потока.
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+    ProgressListener NONE = (done, total) -> {
+    };
+
+    /**
+     * @param done  сколько уже обработано (байт или записей)
+     * @param total сколько всего нужно обработать; {@code -1}, если неизвестно
+     */
+    void onProgress(long done, long total);
+}
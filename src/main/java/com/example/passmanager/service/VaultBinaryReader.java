@@ -0,0 +1,106 @@
+package com.example.passmanager.service;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Потоковое чтение двоичного хранилища; формат описан в {@link VaultBinaryWriter}.
+ */
+final class VaultBinaryReader implements Closeable {
+
+    /**
+     * Предел длины одной записи: длина берётся из файла, и без предела повреждённый файл заставил бы
+     * выделить до 2 ГиБ.
+     */
+    static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    private final DataInputStream in;
+    private byte[] record = new byte[256];
+
+    private int remaining = -1;
+
+    private VaultBinaryRecord current;
+
+    VaultBinaryReader(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+
+    /**
+     * Читает и проверяет заголовок.
+     *
+     * @return количество записей в файле
+     */
+    int readHeader() throws IOException {
+        byte[] magic = new byte[VaultBinaryWriter.MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, VaultBinaryWriter.MAGIC)) {
+            throw new IOException("Файл не является двоичным хранилищем");
+        }
+        int version = in.readUnsignedShort();
+        if (version != VaultBinaryWriter.VERSION) {
+            throw new IOException("Неподдерживаемая версия двоичного хранилища: " + version);
+        }
+        in.readUnsignedShort();
+        remaining = in.readInt();
+        if (remaining < 0) {
+            throw new IOException("Повреждён заголовок двоичного хранилища");
+        }
+        return remaining;
+    }
+
+    boolean next() throws IOException {
+        if (remaining < 0) {
+            readHeader();
+        }
+        if (remaining == 0) {
+            return false;
+        }
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            throw new IOException("Двоичное хранилище оборвано", e);
+        }
+        if (length < 0 || length > MAX_RECORD_SIZE) {
+            throw new IOException("Повреждена длина записи: " + length);
+        }
+        readRecord(length);
+        current = VaultBinaryRecord.parse(record, length);
+        remaining--;
+        return true;
+    }
+
+    /**
+     * Читает запись в буфер, увеличивая его по мере прихода данных: оборванный файл с завышенной длиной
+     * не заставит выделить больше, чем в нём осталось байтов.
+     */
+    private void readRecord(int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            if (read == record.length) {
+                record = Arrays.copyOf(record, (int) Math.min(length, 2L * record.length));
+            }
+            int count = in.read(record, read, Math.min(length, record.length) - read);
+            if (count < 0) {
+                throw new IOException("Двоичное хранилище оборвано");
+            }
+            read += count;
+        }
+    }
+
+    /**
+     * Последняя прочитанная запись.
+     */
+    VaultBinaryRecord record() {
+        return current;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.passmanager.service;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Поля одной записи двоичного хранилища; формат описан в {@link VaultBinaryWriter}.
+ *
+ * @param password байт версии формата и сырой шифротекст; пустой массив — пустой пароль
+ */
+record VaultBinaryRecord(String id, String service, String username, String notes, long createdAtMillis,
+                         byte[] password) {
+
+    /**
+     * Разбирает тело записи (без префикса длины).
+     */
+    static VaultBinaryRecord parse(byte[] data, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+        try {
+            String id = readString(buffer);
+            String service = readString(buffer);
+            String username = readString(buffer);
+            String notes = readString(buffer);
+            long createdAtMillis = buffer.getLong();
+            byte[] password = new byte[checkedLength(buffer)];
+            buffer.get(password);
+            return new VaultBinaryRecord(id, service, username, notes, createdAtMillis, password);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Повреждена запись двоичного хранилища", e);
+        }
+    }
+
+    /**
+     * Читает только id записи, не разбирая остальные поля.
+     */
+    static String parseId(byte[] data, int length) throws IOException {
+        try {
+            return readString(ByteBuffer.wrap(data, 0, length));
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Повреждена запись двоичного хранилища", e);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = checkedLength(buffer);
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static int checkedLength(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Повреждена запись двоичного хранилища");
+        }
+        return length;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.passmanager.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Запись двоичного хранилища.
+ *
+ * <pre>
+ * заголовок: "PMVF" | версия u16 | флаги u16 | количество записей i32
+ * запись:    длина записи i32 | id | service | username | notes | createdAt i64 (мс от эпохи, UTC) | пароль
+ * строка:    длина i32 | байты UTF-8
+ * пароль:    длина i32 | версия формата шифротекста u8 | сырой шифротекст (пусто — пустой пароль)
+ * индекс:    смещения записей по порядку i64[count] | смещения записей, упорядоченных по id, i64[count]
+ * хвост:     смещение первой таблицы i64 | смещение второй таблицы i64 | количество i32 | "PMVX"
+ * </pre>
+ * Индекс и хвост есть только у файлов с флагом {@link #FLAG_INDEXED}.
+ * Индекс в конце файла позволяет читать отдельные записи без разбора остальных (см. {@link MappedVault});
+ * последовательное чтение заканчивается на последней записи и индекс не трогает.
+ */
+final class VaultBinaryWriter {
+
+    static final byte[] MAGIC = {'P', 'M', 'V', 'F'};
+    static final int VERSION = 1;
+    static final int FLAG_INDEXED = 1;
+    static final byte[] INDEX_MAGIC = {'P', 'M', 'V', 'X'};
+    static final int HEADER_SIZE = 12;
+    static final int TRAILER_SIZE = 2 * Long.BYTES + Integer.BYTES + 4;
+
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private long position;
+
+    VaultBinaryWriter(OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    /**
+     * @param indexed после записей будет дописан индекс ({@link #writeIndex})
+     */
+    void writeHeader(int count, boolean indexed) throws IOException {
+        out.write(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(indexed ? FLAG_INDEXED : 0);
+        out.writeInt(count);
+        position += HEADER_SIZE;
+    }
+
+    /**
+     * @return смещение записи от начала файла
+     */
+    long writeEntry(String id, String service, String username, String notes, long createdAtMillis,
+                    byte[] password) throws IOException {
+        record.reset();
+        writeString(id);
+        writeString(service);
+        writeString(username);
+        writeString(notes);
+        recordOut.writeLong(createdAtMillis);
+        recordOut.writeInt(password.length);
+        recordOut.write(password);
+
+        long offset = position;
+        out.writeInt(record.size());
+        record.writeTo(out);
+        position += Integer.BYTES + record.size();
+        return offset;
+    }
+
+    /**
+     * Дописывает индекс после всех записей.
+     *
+     * @param offsets смещения записей в порядке записи
+     * @param byId   номера записей, упорядоченные по id
+     */
+    void writeIndex(long[] offsets, int[] byId) throws IOException {
+        long positionsOffset = position;
+        for (long offset : offsets) {
+            out.writeLong(offset);
+        }
+        long byIdOffset = positionsOffset + (long) offsets.length * Long.BYTES;
+        for (int index : byId) {
+            out.writeLong(offsets[index]);
+        }
+        out.writeLong(positionsOffset);
+        out.writeLong(byIdOffset);
+        out.writeInt(offsets.length);
+        out.write(INDEX_MAGIC);
+        position = byIdOffset + (long) byId.length * Long.BYTES + TRAILER_SIZE;
+    }
+
+    void flush() throws IOException {
+        out.flush();
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        recordOut.writeInt(bytes.length);
+        recordOut.write(bytes);
+    }
+}
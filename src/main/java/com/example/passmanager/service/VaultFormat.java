@@ -0,0 +1,48 @@
+package com.example.passmanager.service;
+
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Форматы файла хранилища. Формат определяется по расширению файла.
+ */
+public enum VaultFormat {
+    /**
+     * Текстовый JSON-массив записей с шифротекстом в Base64.
+     */
+    JSON(".json", "JSON файлы"),
+    /**
+     * Компактный двоичный формат: записи с префиксом длины, сырой шифротекст и время в миллисекундах.
+     */
+    BINARY(".pmv", "Двоичные хранилища");
+
+    private final String extension;
+    private final String description;
+
+    VaultFormat(String extension, String description) {
+        this.extension = extension;
+        this.description = description;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public static Optional<VaultFormat> fromPath(Path path) {
+        if (path == null || path.getFileName() == null) {
+            return Optional.empty();
+        }
+        String fileName = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        for (VaultFormat format : values()) {
+            if (fileName.endsWith(format.extension)) {
+                return Optional.of(format);
+            }
+        }
+        return Optional.empty();
+    }
+}
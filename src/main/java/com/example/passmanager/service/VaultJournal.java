@@ -0,0 +1,141 @@
+package com.example.passmanager.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Журнал изменений хранилища (write-ahead log).
+ * Записи дописываются в конец файла и сбрасываются на диск до возврата из {@link #append(List)}.
+ * Для фонового уплотнения журнал можно «отложить» в отдельный файл, не блокируя новые записи.
+ */
+final class VaultJournal implements Closeable {
+
+    private final Path file;
+    private final Path rotatedFile;
+    private FileChannel channel;
+    private int records;
+
+    VaultJournal(Path file) {
+        this.file = file;
+        this.rotatedFile = file.resolveSibling(file.getFileName() + ".old");
+    }
+
+    /**
+     * Дописывает записи и дожидается их физической записи на диск: один вызов — один сброс на диск.
+     *
+     * @return количество записей в текущем журнале
+     */
+    synchronized int append(List<String> batch) throws IOException {
+        if (channel == null) {
+            Path parent = file.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        StringBuilder text = new StringBuilder(batch.size() * 192);
+        for (String record : batch) {
+            text.append(record);
+        }
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(CharBuffer.wrap(text));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+        records += batch.size();
+        return records;
+    }
+
+    synchronized int records() {
+        return records;
+    }
+
+    synchronized void setRecords(int records) {
+        this.records = records;
+    }
+
+    /**
+     * Переносит текущий журнал в отдельный файл для уплотнения; новые записи пойдут в пустой журнал.
+     *
+     * @return {@code false}, если переносить нечего или предыдущее уплотнение ещё не завершено
+     */
+    synchronized boolean rotate() throws IOException {
+        if (Files.exists(rotatedFile) || !Files.exists(file)) {
+            return false;
+        }
+        closeChannel();
+        Files.move(file, rotatedFile, StandardCopyOption.ATOMIC_MOVE);
+        records = 0;
+        return true;
+    }
+
+    /**
+     * Проверяет, что в журнале нет ни одной записи, в том числе в отложенном файле.
+     */
+    synchronized boolean isEmpty() throws IOException {
+        for (Path path : files()) {
+            if (Files.size(path) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    synchronized boolean hasRotated() {
+        return Files.exists(rotatedFile);
+    }
+
+    /**
+     * Удаляет отложенный журнал после того, как он вошёл в снимок.
+     */
+    synchronized void discardRotated() throws IOException {
+        Files.deleteIfExists(rotatedFile);
+    }
+
+    /**
+     * Полностью очищает журнал: вызывается после записи снимка, который уже содержит все изменения.
+     */
+    synchronized void reset() throws IOException {
+        closeChannel();
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(rotatedFile);
+        records = 0;
+    }
+
+    /**
+     * Файлы журнала в порядке воспроизведения.
+     */
+    synchronized List<Path> files() {
+        List<Path> files = new ArrayList<>(2);
+        if (Files.exists(rotatedFile)) {
+            files.add(rotatedFile);
+        }
+        if (Files.exists(file)) {
+            files.add(file);
+        }
+        return files;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeChannel();
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
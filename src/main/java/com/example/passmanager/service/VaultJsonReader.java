@@ -0,0 +1,309 @@
+package com.example.passmanager.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Потоковый разборщик JSON-хранилища.
+ * Читает массив записей за один проход и заполняет поля текущей записи прямо из токенов,
+ * без промежуточных подстрок и регулярных выражений.
+ */
+final class VaultJsonReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+
+    private final StringBuilder key = new StringBuilder(16);
+    private final StringBuilder value = new StringBuilder(64);
+
+    private boolean started;
+    private boolean finished;
+    private boolean truncated;
+
+    private String op;
+    private String id;
+    private String service;
+    private String username;
+    private String password;
+    private String notes;
+    private String createdAt;
+
+    VaultJsonReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Создаёт разборщик для потока объектов без обрамляющего массива (по одному на строку),
+     * в котором пишется журнал изменений.
+     */
+    static VaultJsonReader forRecords(Reader in) {
+        VaultJsonReader reader = new VaultJsonReader(in);
+        reader.started = true;
+        return reader;
+    }
+
+    /**
+     * Переходит к следующему объекту массива.
+     *
+     * @return {@code false}, если массив закончился или файл оборван
+     */
+    boolean next() throws IOException {
+        if (!started) {
+            started = true;
+            int c;
+            do {
+                c = read();
+            } while (c != -1 && c != '[');
+            if (c == -1) {
+                finished = true;
+            }
+        }
+        while (!finished) {
+            int c = nextNonWhitespace();
+            if (c == -1 || c == ']') {
+                finished = true;
+                return false;
+            }
+            if (c == ',') {
+                continue;
+            }
+            if (c == '{') {
+                if (readObject()) {
+                    return true;
+                }
+                finished = true;
+                truncated = true;
+                return false;
+            }
+            skipValue(c);
+        }
+        return false;
+    }
+
+    /**
+     * Показывает, что поток оборвался посреди объекта (например, при сбое во время записи).
+     */
+    boolean truncated() {
+        return truncated;
+    }
+
+    String op() {
+        return op;
+    }
+
+    String id() {
+        return id;
+    }
+
+    String service() {
+        return service;
+    }
+
+    String username() {
+        return username;
+    }
+
+    String password() {
+        return password;
+    }
+
+    String notes() {
+        return notes;
+    }
+
+    String createdAt() {
+        return createdAt;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean readObject() throws IOException {
+        op = "";
+        id = "";
+        service = "";
+        username = "";
+        password = "";
+        notes = "";
+        createdAt = "";
+
+        while (true) {
+            int c = nextNonWhitespace();
+            if (c == -1) {
+                return false;
+            }
+            if (c == '}') {
+                return true;
+            }
+            if (c == ',') {
+                continue;
+            }
+            if (c != '"') {
+                skipValue(c);
+                continue;
+            }
+            if (!readString(key)) {
+                return false;
+            }
+            c = nextNonWhitespace();
+            if (c != ':') {
+                if (c == -1) {
+                    return false;
+                }
+                unread();
+                continue;
+            }
+            c = nextNonWhitespace();
+            if (c == -1) {
+                return false;
+            }
+            if (c != '"') {
+                skipValue(c);
+                continue;
+            }
+            if (!readString(value)) {
+                return false;
+            }
+            assignField();
+        }
+    }
+
+    private void assignField() {
+        if ("op".contentEquals(key)) {
+            op = value.toString();
+        } else if ("id".contentEquals(key)) {
+            id = value.toString();
+        } else if ("service".contentEquals(key)) {
+            service = value.toString();
+        } else if ("username".contentEquals(key)) {
+            username = value.toString();
+        } else if ("password".contentEquals(key)) {
+            password = value.toString();
+        } else if ("notes".contentEquals(key)) {
+            notes = value.toString();
+        } else if ("createdAt".contentEquals(key)) {
+            createdAt = value.toString();
+        }
+    }
+
+    /**
+     * Читает строку после открывающей кавычки, раскрывая экранирование так же, как его пишет {@code toJson}.
+     */
+    private boolean readString(StringBuilder target) throws IOException {
+        target.setLength(0);
+        while (true) {
+            if (pos == limit && !fill()) {
+                return false;
+            }
+            // Быстрый путь: копируем участок буфера без спецсимволов целиком
+            int start = pos;
+            while (pos < limit) {
+                char c = buffer[pos];
+                if (c == '"' || c == '\\') {
+                    break;
+                }
+                pos++;
+            }
+            target.append(buffer, start, pos - start);
+            if (pos == limit) {
+                continue;
+            }
+            char c = buffer[pos++];
+            if (c == '"') {
+                return true;
+            }
+            int escaped = read();
+            switch (escaped) {
+                case -1 -> {
+                    return false;
+                }
+                case 'n' -> target.append('\n');
+                case 'r' -> target.append('\r');
+                case 't' -> target.append('\t');
+                case 'b' -> target.append('\b');
+                case 'f' -> target.append('\f');
+                case 'u' -> {
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(read(), 16);
+                        if (digit < 0) {
+                            return false;
+                        }
+                        code = (code << 4) | digit;
+                    }
+                    target.append((char) code);
+                }
+                default -> target.append((char) escaped);
+            }
+        }
+    }
+
+    /**
+     * Пропускает значение, которое не является строкой: число, литерал, вложенный объект или массив.
+     */
+    private void skipValue(int first) throws IOException {
+        if (first == '"') {
+            readString(value);
+            return;
+        }
+        if (first == '{' || first == '[') {
+            int depth = 1;
+            int c;
+            while (depth > 0 && (c = read()) != -1) {
+                if (c == '"') {
+                    readString(value);
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+            }
+            return;
+        }
+        int c;
+        while ((c = read()) != -1) {
+            if (c == ',' || c == '}' || c == ']') {
+                unread();
+                return;
+            }
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c != -1 && Character.isWhitespace(c));
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos++];
+    }
+
+    private void unread() {
+        pos--;
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            pos = 0;
+            limit = 0;
+            return false;
+        }
+        pos = 0;
+        limit = read;
+        return true;
+    }
+}
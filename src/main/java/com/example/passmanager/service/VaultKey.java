@@ -0,0 +1,318 @@
+package com.example.passmanager.service;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Ключи хранилища, защищённые мастер-паролем.
+ * <p>
+ * Пароли записей шифруются собственными ключами, а те — поколениями ключа хранилища ({@link KeyRing}).
+ * В файле {@value #FILE_NAME} набор поколений хранится зашифрованным (AES-GCM) ключом, выведенным из мастер-пароля
+ * через PBKDF2-HMAC-SHA256. Там же записаны параметры вывода — соль и число итераций, — поэтому стоимость можно
+ * менять без перешифровки записей.
+ *
+ * <pre>
+ * "PMKW" | версия u8 | алгоритм u8 | итерации i32 | длина соли u8 | соль | nonce (12) | длина u16 | шифротекст
+ * </pre>
+ * Заголовок до шифротекста входит в проверяемые данные GCM: подмена параметров обнаруживается так же,
+ * как неверный пароль. В версии 1 шифротекст содержал единственный ключ, он читается как поколение {@code 0}.
+ * <p>
+ * Файл ещё более ранних версий содержит ключ хранилища открытым текстом; при первом запуске он защищается
+ * паролем, а сами записи остаются прежними.
+ * <p>
+ * Экземпляр — открытое на сеанс хранилище: выведенный из пароля ключ держится в памяти, чтобы сохранять
+ * изменения набора поколений без повторного ввода пароля.
+ */
+public final class VaultKey {
+
+    static final String FILE_NAME = "master.key";
+
+    /**
+     * Нижняя граница числа итераций (рекомендация OWASP для PBKDF2-HMAC-SHA256), даже если подбор дал меньше.
+     */
+    public static final int MIN_ITERATIONS = 600_000;
+    public static final Duration DEFAULT_UNLOCK_TIME = Duration.ofSeconds(1);
+
+    private static final byte[] MAGIC = {'P', 'M', 'K', 'W'};
+    private static final int VERSION_SINGLE_KEY = 1;
+    private static final int VERSION = 2;
+    private static final int KDF_PBKDF2_SHA256 = 1;
+    private static final String KDF_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String ALGORITHM = "AES";
+    private static final String WRAP_TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int KEY_SIZE = 256;
+    private static final int SALT_LENGTH = 16;
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+    private static final int CALIBRATION_ITERATIONS = 50_000;
+    private static final int CALIBRATION_ROUNDS = 3;
+
+    private final Path file;
+    private SecretKey kek;
+    private byte[] salt;
+    private int iterations;
+    private volatile KeyRing keyRing;
+
+    private VaultKey(Path file, SecretKey kek, byte[] salt, int iterations, KeyRing keyRing) {
+        this.file = file;
+        this.kek = kek;
+        this.salt = salt;
+        this.iterations = iterations;
+        this.keyRing = keyRing;
+    }
+
+    /**
+     * Состояние ключа в каталоге хранилища.
+     */
+    public static Status status(Path baseDir) {
+        Path file = baseDir.resolve(FILE_NAME);
+        try {
+            if (!Files.exists(file)) {
+                return Status.MISSING;
+            }
+            byte[] content = Files.readAllBytes(file);
+            return isWrapped(content) ? Status.PROTECTED : Status.UNPROTECTED;
+        } catch (IOException e) {
+            System.err.println("Не удалось прочитать ключ хранилища: " + e.getMessage());
+            // Файл есть, но не читается: открыть его без пароля всё равно не получится
+            return Status.PROTECTED;
+        }
+    }
+
+    /**
+     * Выводит ключ из пароля и расшифровывает набор поколений. Стоит ровно одного вывода ключа;
+     * пароль больше не нужен до конца сеанса.
+     *
+     * @return пусто, если пароль неверен или файл ключа повреждён
+     */
+    public static Optional<VaultKey> unlock(Path baseDir, char[] password) {
+        Path file = baseDir.resolve(FILE_NAME);
+        try {
+            Header header = Header.read(Files.readAllBytes(file));
+            SecretKey kek = derive(password, header.salt(), header.iterations());
+            Cipher cipher = Cipher.getInstance(WRAP_TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, kek, new GCMParameterSpec(TAG_LENGTH_BITS, header.nonce()));
+            cipher.updateAAD(header.authenticated());
+            byte[] payload = cipher.doFinal(header.payload());
+            try {
+                KeyRing keyRing = header.version() == VERSION_SINGLE_KEY
+                        ? KeyRing.of(new SecretKeySpec(payload, ALGORITHM))
+                        : KeyRing.decode(payload);
+                return Optional.of(new VaultKey(file, kek, header.salt(), header.iterations(), keyRing));
+            } finally {
+                Arrays.fill(payload, (byte) 0);
+            }
+        } catch (AEADBadTagException e) {
+            return Optional.empty();
+        } catch (IOException | GeneralSecurityException e) {
+            System.err.println("Не удалось открыть ключ хранилища: " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Защищает ключ хранилища паролем. Незащищённый ключ прежней версии сохраняется, иначе создаётся новый.
+     * Файл заменяется атомарно.
+     *
+     * @param iterations число итераций PBKDF2, например из {@link #calibrate(Duration)}
+     * @return открытое хранилище; пусто, если файл не удалось записать
+     */
+    public static Optional<VaultKey> create(Path baseDir, char[] password, int iterations) {
+        Path file = baseDir.resolve(FILE_NAME);
+        try {
+            KeyRing keyRing = status(baseDir) == Status.UNPROTECTED
+                    ? KeyRing.of(new SecretKeySpec(Files.readAllBytes(file), ALGORITHM))
+                    : KeyRing.generate();
+            VaultKey vaultKey = new VaultKey(file, null, null, 0, keyRing);
+            return vaultKey.changePassword(password, iterations) ? Optional.of(vaultKey) : Optional.empty();
+        } catch (IOException e) {
+            System.err.println("Не удалось прочитать ключ хранилища: " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Заново шифрует набор поколений новым паролем или с новым числом итераций.
+     * Записи хранилища не перешифровываются.
+     */
+    public synchronized boolean changePassword(char[] password, int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Число итераций должно быть положительным: " + iterations);
+        }
+        try {
+            byte[] newSalt = new byte[SALT_LENGTH];
+            new SecureRandom().nextBytes(newSalt);
+            SecretKey newKek = derive(password, newSalt, iterations);
+            if (!write(newKek, newSalt, iterations, keyRing)) {
+                return false;
+            }
+            kek = newKek;
+            salt = newSalt;
+            this.iterations = iterations;
+            return true;
+        } catch (GeneralSecurityException e) {
+            System.err.println("Не удалось записать ключ хранилища: " + e.getMessage());
+            return false;
+        }
+    }
+
+    KeyRing keyRing() {
+        return keyRing;
+    }
+
+    /**
+     * Сохраняет изменённый набор поколений тем же ключом, что выведен из пароля при открытии.
+     * Набор в памяти меняется только после записи файла.
+     */
+    synchronized boolean update(KeyRing keyRing) {
+        if (!write(kek, salt, iterations, keyRing)) {
+            return false;
+        }
+        this.keyRing = keyRing;
+        return true;
+    }
+
+    private boolean write(SecretKey kek, byte[] salt, int iterations, KeyRing keyRing) {
+        byte[] payload = keyRing.encode();
+        try {
+            byte[] nonce = new byte[NONCE_LENGTH];
+            new SecureRandom().nextBytes(nonce);
+            byte[] authenticated = Header.authenticated(iterations, salt, nonce);
+
+            Cipher cipher = Cipher.getInstance(WRAP_TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, kek, new GCMParameterSpec(TAG_LENGTH_BITS, nonce));
+            cipher.updateAAD(authenticated);
+            byte[] encrypted = cipher.doFinal(payload);
+
+            ByteArrayOutputStream content = new ByteArrayOutputStream(authenticated.length + 2 + encrypted.length);
+            DataOutputStream out = new DataOutputStream(content);
+            out.write(authenticated);
+            out.writeShort(encrypted.length);
+            out.write(encrypted);
+            VaultSnapshots.writeAtomically(file, content.toByteArray());
+            return true;
+        } catch (IOException | GeneralSecurityException e) {
+            System.err.println("Не удалось записать ключ хранилища: " + e.getMessage());
+            return false;
+        } finally {
+            Arrays.fill(payload, (byte) 0);
+        }
+    }
+
+    /**
+     * Подбирает число итераций, при котором разблокировка на этом компьютере занимает около {@code target}.
+     * Скорость измеряется по нескольким коротким прогонам (лучший из них, после прогрева JIT),
+     * результат не меньше {@value #MIN_ITERATIONS}.
+     */
+    public static int calibrate(Duration target) {
+        char[] probe = "calibration".toCharArray();
+        byte[] salt = new byte[SALT_LENGTH];
+        long best = Long.MAX_VALUE;
+        try {
+            for (int round = 0; round < CALIBRATION_ROUNDS; round++) {
+                long start = System.nanoTime();
+                derive(probe, salt, CALIBRATION_ITERATIONS);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Алгоритм недоступен: " + KDF_ALGORITHM, e);
+        }
+        long iterations = target.toNanos() * CALIBRATION_ITERATIONS / Math.max(1, best);
+        return (int) Math.max(MIN_ITERATIONS, Math.min(Integer.MAX_VALUE, iterations));
+    }
+
+    private static SecretKey derive(char[] password, byte[] salt, int iterations) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, KEY_SIZE);
+        try {
+            byte[] key = SecretKeyFactory.getInstance(KDF_ALGORITHM).generateSecret(spec).getEncoded();
+            try {
+                return new SecretKeySpec(key, ALGORITHM);
+            } finally {
+                Arrays.fill(key, (byte) 0);
+            }
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static boolean isWrapped(byte[] content) {
+        return content.length > MAGIC.length && Arrays.equals(content, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+    }
+
+    public enum Status {
+        /**
+         * Хранилище ещё не создано.
+         */
+        MISSING,
+        /**
+         * Ключ прежней версии, записанный открытым текстом.
+         */
+        UNPROTECTED,
+        PROTECTED
+    }
+
+    /**
+     * Разобранный файл ключа.
+     *
+     * @param payload       зашифрованный набор поколений (в версии 1 — единственный ключ)
+     * @param authenticated байты заголовка до шифротекста
+     */
+    private record Header(int version, int iterations, byte[] salt, byte[] nonce, byte[] payload,
+                          byte[] authenticated) {
+
+        static Header read(byte[] content) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+            byte[] magic = in.readNBytes(MAGIC.length);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Ключ хранилища не защищён паролем");
+            }
+            int version = in.readUnsignedByte();
+            int kdf = in.readUnsignedByte();
+            if ((version != VERSION && version != VERSION_SINGLE_KEY) || kdf != KDF_PBKDF2_SHA256) {
+                throw new IOException("Неподдерживаемый формат ключа хранилища: " + version + "/" + kdf);
+            }
+            int iterations = in.readInt();
+            if (iterations < 1) {
+                throw new IOException("Повреждён ключ хранилища");
+            }
+            byte[] salt = new byte[in.readUnsignedByte()];
+            in.readFully(salt);
+            byte[] nonce = new byte[NONCE_LENGTH];
+            in.readFully(nonce);
+            int authenticatedLength = content.length - in.available();
+            byte[] payload = new byte[in.readUnsignedShort()];
+            in.readFully(payload);
+            return new Header(version, iterations, salt, nonce, payload, Arrays.copyOf(content, authenticatedLength));
+        }
+
+        static byte[] authenticated(int iterations, byte[] salt, byte[] nonce) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(KDF_PBKDF2_SHA256);
+            out.writeInt(iterations);
+            out.writeByte(salt.length);
+            out.write(salt);
+            out.write(nonce);
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.passmanager.service;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Поколения снимка хранилища на диске.
+ * Снимок пишется во временный файл в том же каталоге, сбрасывается на диск и атомарно переименовывается на место.
+ * Рядом лежит контрольная сумма SHA-256, а предыдущие снимки хранятся как {@code vault.json.1}, {@code vault.json.2} и т.д.
+ */
+final class VaultSnapshots {
+
+    private static final String CHECKSUM_SUFFIX = ".sha256";
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+
+    private final Path file;
+    private final int generations;
+
+    /**
+     * @param generations сколько предыдущих снимков хранить кроме текущего
+     */
+    VaultSnapshots(Path file, int generations) {
+        this.file = file;
+        this.generations = generations;
+    }
+
+    /**
+     * Атомарно записывает новый снимок, сдвигая предыдущие поколения.
+     */
+    void write(byte[] content) throws IOException {
+        write(out -> out.write(content));
+    }
+
+    /**
+     * Как {@link #write(byte[])}, но содержимое пишется потоком прямо во временный файл,
+     * а контрольная сумма считается по пути: снимок не собирается в памяти целиком.
+     */
+    void write(Content content) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+
+        MessageDigest digest = newDigest();
+        Path dataTmp = writeTemp(dir, content, digest);
+        Path checksumTmp = null;
+        try {
+            byte[] checksum = HexFormat.of().formatHex(digest.digest()).getBytes(StandardCharsets.US_ASCII);
+            checksumTmp = writeTemp(dir, out -> out.write(checksum), null);
+
+            // Сдвигаем поколения: vault.json.(N-1) -> vault.json.N, ..., vault.json -> vault.json.1.
+            // Если сбой случится до последнего переименования, чтение откатится на vault.json.1.
+            for (int generation = generations; generation >= 1; generation--) {
+                Path from = generation == 1 ? file : generation(generation - 1);
+                Path to = generation(generation);
+                moveIfExists(checksumFile(from), checksumFile(to));
+                moveIfExists(from, to);
+            }
+            if (generations == 0) {
+                Files.deleteIfExists(checksumFile(file));
+            }
+
+            Files.move(checksumTmp, checksumFile(file), StandardCopyOption.ATOMIC_MOVE);
+            Files.move(dataTmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            syncDirectory(dir);
+        } finally {
+            Files.deleteIfExists(dataTmp);
+            if (checksumTmp != null) {
+                Files.deleteIfExists(checksumTmp);
+            }
+        }
+    }
+
+    /**
+     * Заменяет содержимое одного из существующих снимков вместе с его контрольной суммой, не сдвигая поколения.
+     * Сумма переименовывается первой: если сбой случится между переименованиями, снимок не пройдёт проверку
+     * и будет пропущен при чтении, а не прочитан неверно.
+     */
+    static void replace(Path snapshot, Content content) throws IOException {
+        Path dir = snapshot.toAbsolutePath().getParent();
+        MessageDigest digest = newDigest();
+        Path dataTmp = writeTemp(dir, content, digest);
+        Path checksumTmp = null;
+        try {
+            byte[] checksum = HexFormat.of().formatHex(digest.digest()).getBytes(StandardCharsets.US_ASCII);
+            checksumTmp = writeTemp(dir, out -> out.write(checksum), null);
+            Files.move(checksumTmp, checksumFile(snapshot), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            Files.move(dataTmp, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            syncDirectory(dir);
+        } finally {
+            Files.deleteIfExists(dataTmp);
+            if (checksumTmp != null) {
+                Files.deleteIfExists(checksumTmp);
+            }
+        }
+    }
+
+    /**
+     * Атомарно заменяет произвольный файл: содержимое либо записано полностью, либо файл не изменился.
+     */
+    static void writeAtomically(Path target, byte[] content) throws IOException {
+        writeAtomically(target, out -> out.write(content));
+    }
+
+    static void writeAtomically(Path target, Content content) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = writeTemp(dir, content, null);
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            syncDirectory(dir);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Существующие снимки от нового к старому.
+     */
+    List<Path> candidates() {
+        List<Path> candidates = new ArrayList<>(generations + 1);
+        for (int generation = 0; generation <= generations; generation++) {
+            Path path = generation == 0 ? file : generation(generation);
+            if (Files.exists(path)) {
+                candidates.add(path);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Проверяет контрольную сумму снимка. Без файла суммы целым считается только текущий снимок и только если
+     * сумм нет ни у одного поколения: так его записала прежняя версия. Иначе сумма потеряна при сбое
+     * между переименованиями в {@link #write(Content)}, и снимок пропускается.
+     */
+    boolean verify(Path snapshot) throws IOException {
+        Path checksumFile = checksumFile(snapshot);
+        if (!Files.exists(checksumFile)) {
+            return snapshot.equals(file) && !hasChecksums();
+        }
+        String expected = Files.readString(checksumFile, StandardCharsets.US_ASCII).trim();
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(snapshot)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return expected.equalsIgnoreCase(HexFormat.of().formatHex(digest.digest()));
+    }
+
+    private boolean hasChecksums() {
+        for (int generation = 1; generation <= generations; generation++) {
+            if (Files.exists(checksumFile(generation(generation)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Path generation(int generation) {
+        return file.resolveSibling(file.getFileName() + "." + generation);
+    }
+
+    private static Path checksumFile(Path snapshot) {
+        return snapshot.resolveSibling(snapshot.getFileName() + CHECKSUM_SUFFIX);
+    }
+
+    /**
+     * @param digest если не {@code null}, в него добавляются все записанные байты
+     */
+    private static Path writeTemp(Path dir, Content content, MessageDigest digest) throws IOException {
+        Path tmp = Files.createTempFile(dir, ".vault", ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), WRITE_BUFFER_SIZE);
+            if (digest != null) {
+                out = new DigestOutputStream(out, digest);
+            }
+            content.writeTo(new FilterOutputStream(out) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() {
+                    // Канал закрывается здесь после force, а не тем, кто пишет содержимое
+                }
+            });
+            out.flush();
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            // В том числе отмена записи: недописанный файл не остаётся в каталоге
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        return tmp;
+    }
+
+    private static void moveIfExists(Path from, Path to) throws IOException {
+        if (Files.exists(from)) {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Сбрасывает на диск сам каталог, чтобы переименование пережило сбой питания.
+     * Не на всех платформах каталог можно открыть; там этот шаг пропускается.
+     */
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Windows не позволяет открыть каталог как файл
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Содержимое файла, которое пишется в поток. Поток закрывать не нужно.
+     */
+    @FunctionalInterface
+    interface Content {
+
+        void writeTo(OutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.passmanager.service;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Отложенная запись с объединением серий изменений.
+ * Запись выполняется, когда запросы затихли на время {@code debounce}, но не позже {@code maxDelay}
+ * после первого незаписанного запроса. Поэтому при сбое теряется не больше одного окна {@code maxDelay}.
+ */
+final class WriteBehindScheduler implements AutoCloseable {
+
+    private final BooleanSupplier flushAction;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "vault-write-behind");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private long debounceNanos;
+    private long maxDelayNanos;
+    private boolean closed;
+    private boolean dirty;
+    private long burstStart;
+    private long lastRequest;
+
+    /**
+     * @param flushAction записывает накопленные изменения; {@code false} означает ошибку, запись будет повторена,
+     *                    пока планировщик не закрыт
+     */
+    WriteBehindScheduler(BooleanSupplier flushAction, Duration debounce, Duration maxDelay) {
+        this.flushAction = flushAction;
+        configure(debounce, maxDelay);
+    }
+
+    synchronized void configure(Duration debounce, Duration maxDelay) {
+        if (debounce.isNegative() || maxDelay.compareTo(debounce) < 0) {
+            throw new IllegalArgumentException("Ожидается 0 <= debounce <= maxDelay");
+        }
+        this.debounceNanos = debounce.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+    }
+
+    /**
+     * Отмечает, что есть незаписанные изменения. Первый запрос серии планирует запись.
+     */
+    synchronized void request() {
+        long now = System.nanoTime();
+        lastRequest = now;
+        if (!dirty && !closed) {
+            dirty = true;
+            burstStart = now;
+            executor.schedule(this::fire, debounceNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Немедленно записывает накопленные изменения в вызывающем потоке. Запись, уже начатая в фоне,
+     * выполняется под той же блокировкой {@code flushAction}, поэтому к возврату она тоже завершена.
+     *
+     * @return {@code false}, если изменения не удалось записать
+     */
+    boolean flush() {
+        synchronized (this) {
+            dirty = false;
+        }
+        return runFlush();
+    }
+
+    /**
+     * Останавливает фоновую запись; незаписанные изменения нужно записать {@link #flush()} до закрытия.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        executor.shutdown();
+    }
+
+    private void fire() {
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            // Пока запросы продолжают поступать, откладываем запись, но не дальше предельного срока
+            long now = System.nanoTime();
+            long target = Math.min(lastRequest + debounceNanos, burstStart + maxDelayNanos);
+            if (now < target) {
+                executor.schedule(this::fire, target - now, TimeUnit.NANOSECONDS);
+                return;
+            }
+            dirty = false;
+        }
+        runFlush();
+    }
+
+    private boolean runFlush() {
+        if (flushAction.getAsBoolean()) {
+            return true;
+        }
+        request();
+        return false;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.passmanager.view;
+
+import javafx.application.Platform;
+import javafx.beans.binding.BooleanBinding;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.event.ActionEvent;
+import javafx.geometry.Insets;
+import javafx.scene.Node;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Dialog;
+import javafx.scene.control.Label;
+import javafx.scene.control.PasswordField;
+import javafx.scene.layout.VBox;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Запрос мастер-пароля перед открытием хранилища.
+ */
+public final class MasterPasswordDialog {
+
+    private MasterPasswordDialog() {
+    }
+
+    /**
+     * Показывает окно и ждёт, пока введённый пароль не пройдёт проверку или пользователь не откажется от ввода.
+     * Проверка идёт в фоновом потоке: окно остаётся отзывчивым, а при неудаче показывает ошибку и ждёт
+     * новой попытки. Введённый пароль затирается после проверки.
+     *
+     * @param message пояснение над полем ввода
+     * @param confirm попросить ввести пароль дважды (новый пароль)
+     * @param check   проверка пароля; пусто, если пароль не подошёл
+     * @param failure сообщение о неудачной проверке
+     * @return результат успешной проверки; пусто, если пользователь отказался от ввода
+     */
+    public static <T> Optional<T> ask(String message, boolean confirm, Function<char[], Optional<T>> check,
+                                      String failure) {
+        Dialog<T> dialog = new Dialog<>();
+        dialog.setTitle("Мастер-пароль");
+        dialog.setHeaderText(message);
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+
+        PasswordField passwordField = new PasswordField();
+        passwordField.setPromptText("Мастер-пароль");
+        PasswordField confirmField = new PasswordField();
+        confirmField.setPromptText("Повторите пароль");
+        Label errorLabel = new Label();
+        errorLabel.setStyle("-fx-text-fill: #c62828;");
+
+        VBox content = new VBox(8, passwordField);
+        if (confirm) {
+            content.getChildren().add(confirmField);
+        }
+        content.getChildren().add(errorLabel);
+        content.setPadding(new Insets(10));
+        dialog.getDialogPane().setContent(content);
+
+        // Кнопка OK недоступна, пока пароль пуст, не совпадает с повтором или проверяется
+        BooleanProperty checking = new SimpleBooleanProperty();
+        BooleanBinding invalid = passwordField.textProperty().isEmpty().or(checking);
+        if (confirm) {
+            invalid = invalid.or(confirmField.textProperty().isNotEqualTo(passwordField.textProperty()));
+        }
+        Node okButton = dialog.getDialogPane().lookupButton(ButtonType.OK);
+        okButton.disableProperty().bind(invalid);
+        dialog.getDialogPane().lookupButton(ButtonType.CANCEL).disableProperty().bind(checking);
+        passwordField.disableProperty().bind(checking);
+        confirmField.disableProperty().bind(checking);
+        // Результат задаётся только успешной проверкой; кнопки сами окно с результатом не закрывают
+        dialog.setResultConverter(button -> null);
+
+        okButton.addEventFilter(ActionEvent.ACTION, event -> {
+            event.consume();
+            char[] password = passwordField.getText().toCharArray();
+            checking.set(true);
+            errorLabel.setText("Проверка пароля...");
+            CompletableFuture.supplyAsync(() -> {
+                try {
+                    return check.apply(password);
+                } finally {
+                    Arrays.fill(password, '\0');
+                }
+            }).whenCompleteAsync((result, error) -> {
+                checking.set(false);
+                if (error == null && result.isPresent()) {
+                    dialog.setResult(result.get());
+                    dialog.close();
+                    return;
+                }
+                if (error != null) {
+                    System.err.println("Не удалось проверить мастер-пароль: " + error.getMessage());
+                }
+                errorLabel.setText(failure);
+                passwordField.clear();
+                confirmField.clear();
+                passwordField.requestFocus();
+            }, Platform::runLater);
+        });
+        Platform.runLater(passwordField::requestFocus);
+
+        Optional<T> result = dialog.showAndWait();
+        passwordField.clear();
+        confirmField.clear();
+        return result;
+    }
+}
@@ -1,22 +1,39 @@
 package com.example.passmanager.view;
 
+import com.example.passmanager.model.EntryChanges;
 import com.example.passmanager.model.PasswordEntry;
 import com.example.passmanager.model.PasswordStrength;
+import com.example.passmanager.service.VaultFormat;
+import javafx.animation.PauseTransition;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.*;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 import java.nio.file.Path;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Consumer;
 
 /**
@@ -24,6 +41,17 @@ import java.util.function.Consumer;
  */
 public final class PasswordManagerView {
 
+    private static final String PASSWORD_MASK = "••••••••";
+    private static final DateTimeFormatter CREATED_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+    /**
+     * Сколько открытых в таблице паролей помнить: при прокрутке они показываются без повторной расшифровки.
+     */
+    private static final int MAX_REVEALED = 32;
+    /**
+     * Через сколько после последнего открытия пароля все открытые пароли снова скрываются.
+     */
+    private static final javafx.util.Duration REVEAL_TIMEOUT = javafx.util.Duration.seconds(30);
+
     private final ObservableList<PasswordEntry> entries = FXCollections.observableArrayList();
 
     private final TableView<PasswordEntry> tableView = new TableView<>(entries);
@@ -34,6 +62,11 @@ public final class PasswordManagerView {
     private final TextArea notesArea = new TextArea();
     private final Spinner<Integer> lengthSpinner = new Spinner<>(6, 32, 12);
     private final Label passwordStrengthLabel = new Label("Надежность: —");
+    private final ProgressBar progressBar = new ProgressBar();
+    private final Label progressLabel = new Label();
+    private final Button cancelTaskButton = new Button("Отмена");
+    private final HBox progressBox = new HBox(8, progressLabel, progressBar, cancelTaskButton);
+    private final TextField searchField = new TextField();
 
     private Consumer<Integer> onGenerate = length -> {};
     private Consumer<String> onDelete = id -> {};
@@ -42,8 +75,43 @@ public final class PasswordManagerView {
     private Consumer<String> onPasswordInput = text -> {};
     private Consumer<Path> onImport = path -> {};
     private Consumer<Path> onExport = path -> {};
+    private Runnable onRotateKey = () -> {};
+    private Runnable onCancelTask = () -> {};
+    private Consumer<String> onSearch = query -> {};
 
     private PasswordEntry selected;
+    /**
+     * Показанные в таблице записи по id: проверка выделения и поиск записи для изменения без обхода списка.
+     */
+    private final Map<String, PasswordEntry> shown = new HashMap<>();
+    /**
+     * Позиции показанных записей в списке таблицы по id, чтобы удалять и заменять строки по индексу.
+     * Строится при первой надобности и сбрасывается, когда список перестраивается целиком.
+     */
+    private Map<String, Integer> positions;
+    private Set<String> reused = Set.of();
+    private Set<String> breached = Set.of();
+    /**
+     * Id записей, пароли которых открыты щелчком по ячейке; самые давние забываются первыми.
+     * Сами пароли здесь не хранятся: ячейка берёт их из ограниченного кэша хранилища при отрисовке.
+     */
+    private final Set<String> revealed = Collections.newSetFromMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_REVEALED;
+        }
+    });
+    private final PauseTransition hideRevealed = new PauseTransition(REVEAL_TIMEOUT);
+    /**
+     * Ключи сортировки показанных строк по id записи, посчитанные один раз, а не при каждом сравнении.
+     * Ключи удалённых, заменённых и скрытых поиском записей удаляются вместе с ними.
+     */
+    private final Map<String, SortKey> sortKeys = new HashMap<>();
+    private final Collator collator = Collator.getInstance(Locale.forLanguageTag("ru"));
+    /**
+     * Столбцы, по которым можно сортировать, и сравнение ключей для каждого из них.
+     */
+    private Map<TableColumn<PasswordEntry, ?>, Comparator<SortKey>> sortComparators = Map.of();
 
     public PasswordManagerView(Stage stage) {
         BorderPane root = new BorderPane();
@@ -78,25 +146,85 @@ public final class PasswordManagerView {
         Button exportButton = new Button("Сохранить в файл");
         exportButton.setOnAction(event -> chooseFile(false).ifPresent(onExport));
 
-        return new ToolBar(refreshButton, new Separator(), deleteButton, new Separator(), importButton, exportButton);
+        Button rotateKeyButton = new Button("Сменить ключ шифрования");
+        rotateKeyButton.setOnAction(event -> onRotateKey.run());
+
+        searchField.setPromptText("Поиск: сервис, логин, заметки");
+        searchField.setPrefWidth(220);
+        // Фильтруем при каждом изменении текста
+        searchField.textProperty().addListener((obs, oldText, newText) -> onSearch.accept(newText));
+
+        cancelTaskButton.setOnAction(event -> onCancelTask.run());
+        progressBar.setPrefWidth(160);
+        progressBox.setAlignment(Pos.CENTER_LEFT);
+        progressBox.setVisible(false);
+        progressBox.setManaged(false);
+
+        return new ToolBar(refreshButton, new Separator(), deleteButton, new Separator(), importButton, exportButton,
+                new Separator(), rotateKeyButton, new Separator(), searchField, new Separator(), progressBox);
     }
 
     private TableView<PasswordEntry> buildTable() {
         tableView.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY_ALL_COLUMNS);
+        // Значения берутся напрямую, без отражения PropertyValueFactory: фабрика вызывается для каждой ячейки
         TableColumn<PasswordEntry, String> serviceCol = new TableColumn<>("Сервис");
-        serviceCol.setCellValueFactory(new PropertyValueFactory<>("service"));
+        serviceCol.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().getService()));
 
         TableColumn<PasswordEntry, String> loginCol = new TableColumn<>("Логин");
-        loginCol.setCellValueFactory(new PropertyValueFactory<>("username"));
+        loginCol.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().getUsername()));
+
+        // Таблица не расшифровывает пароли при отрисовке: пароль открывается только щелчком по его ячейке
+        TableColumn<PasswordEntry, PasswordEntry> passwordCol = new TableColumn<>("Пароль");
+        passwordCol.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue()));
+        passwordCol.setCellFactory(column -> new PasswordCell());
+        passwordCol.setSortable(false);
+
+        TableColumn<PasswordEntry, LocalDateTime> createdCol = new TableColumn<>("Создано");
+        createdCol.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getCreatedAt()));
+        createdCol.setCellFactory(column -> new TableCell<>() {
+            @Override
+            protected void updateItem(LocalDateTime createdAt, boolean empty) {
+                super.updateItem(createdAt, empty);
+                setText(empty || createdAt == null ? null : CREATED_FORMAT.format(createdAt));
+            }
+        });
 
-        TableColumn<PasswordEntry, String> passwordCol = new TableColumn<>("Пароль");
-        passwordCol.setCellValueFactory(new PropertyValueFactory<>("password"));
+        tableView.getColumns().addAll(serviceCol, loginCol, passwordCol, createdCol);
 
-        TableColumn<PasswordEntry, String> createdCol = new TableColumn<>("Создано");
-        createdCol.setCellValueFactory(cell -> javafx.beans.binding.Bindings.createStringBinding(
-                () -> cell.getValue().getCreatedAt().format(DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm"))));
+        sortComparators = Map.of(
+                serviceCol, Comparator.comparing(SortKey::service),
+                loginCol, Comparator.comparing(SortKey::username),
+                createdCol, Comparator.comparing(SortKey::createdAt));
+        tableView.setSortPolicy(table -> {
+            sortEntries();
+            return true;
+        });
 
-        tableView.getColumns().addAll(serviceCol, loginCol, passwordCol, createdCol);
+        // Записи с паролем из утечек или с паролем, который используется где-то ещё, подсвечиваются
+        Tooltip breachedTooltip = new Tooltip("Этот пароль найден в утечках");
+        Tooltip reusedTooltip = new Tooltip("Этот пароль используется и в других записях");
+        tableView.setRowFactory(table -> new TableRow<>() {
+            @Override
+            protected void updateItem(PasswordEntry entry, boolean empty) {
+                super.updateItem(entry, empty);
+                String id = empty || entry == null ? null : entry.getId();
+                if (id != null && breached.contains(id)) {
+                    setStyle("-fx-control-inner-background: #ffebee; -fx-control-inner-background-alt: #ffcdd2;");
+                    setTooltip(breachedTooltip);
+                } else if (id != null && reused.contains(id)) {
+                    setStyle("-fx-control-inner-background: #fff3e0; -fx-control-inner-background-alt: #ffe8cc;");
+                    setTooltip(reusedTooltip);
+                } else {
+                    setStyle("");
+                    setTooltip(null);
+                }
+            }
+        });
+
+        hideRevealed.setOnFinished(event -> {
+            revealed.clear();
+            tableView.refresh();
+        });
 
         tableView.getSelectionModel().selectedItemProperty().addListener((obs, oldSel, newSel) -> {
             selected = newSel;
@@ -202,18 +330,186 @@ public final class PasswordManagerView {
     private void fillForm(PasswordEntry entry) {
         serviceField.setText(entry.getService());
         loginField.setText(entry.getUsername());
-        passwordField.setText(entry.getPassword());
+        String password = entry.getPassword();
+        passwordField.setText(password);
         notesArea.setText(entry.getNotes());
-        onPasswordInput.accept(entry.getPassword());
+        onPasswordInput.accept(password);
     }
 
-    public void setEntries(List<PasswordEntry> newEntries) {
+    /**
+     * Полностью заменяет содержимое таблицы. Для отдельных изменений используйте {@link #applyChanges(EntryChanges)}.
+     */
+    public void setEntries(Collection<PasswordEntry> newEntries) {
+        if (tableView.getItems() != entries) {
+            // Возврат от отображённого хранилища к обычному списку
+            tableView.setItems(entries);
+            sortComparators.keySet().forEach(column -> column.setSortable(true));
+        }
+        shown.clear();
+        revealed.clear();
+        for (PasswordEntry entry : newEntries) {
+            shown.put(entry.getId(), entry);
+        }
+        sortKeys.keySet().retainAll(shown.keySet());
+        positions = null;
         entries.setAll(newEntries);
-        if (!entries.contains(selected)) {
+        if (selected != null && !shown.containsKey(selected.getId())) {
+            selected = null;
+        }
+    }
+
+    /**
+     * Применяет изменения минимальными правками списка: добавление в конец и удаление одной записи
+     * не перестраивают остальные строки таблицы. Выделение сохраняется по id.
+     */
+    public void applyChanges(EntryChanges changes) {
+        if (!changes.removed().isEmpty()) {
+            if (changes.removed().size() == 1) {
+                PasswordEntry removed = shown.remove(changes.removed().get(0));
+                if (removed != null) {
+                    int index = positionOf(removed);
+                    entries.remove(index);
+                    positions.remove(removed.getId());
+                    // Строки после удалённой сдвигаются на одну позицию
+                    for (int i = index; i < entries.size(); i++) {
+                        positions.put(entries.get(i).getId(), i);
+                    }
+                    forget(removed);
+                }
+            } else {
+                // Одно событие изменения на весь пакет; записи сравниваются по ссылке
+                Set<PasswordEntry> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+                for (String id : changes.removed()) {
+                    PasswordEntry entry = shown.remove(id);
+                    if (entry != null) {
+                        removed.add(entry);
+                        forget(entry);
+                    }
+                }
+                entries.removeAll(removed);
+                positions = null;
+            }
+        }
+
+        for (PasswordEntry entry : changes.updated()) {
+            PasswordEntry previous = shown.get(entry.getId());
+            if (previous == null) {
+                continue;
+            }
+            shown.put(entry.getId(), entry);
+            forget(previous);
+            int index = positionOf(previous);
+            entries.set(index, entry);
+            if (selected != null && selected.getId().equals(entry.getId())) {
+                tableView.getSelectionModel().select(index);
+            }
+        }
+
+        List<PasswordEntry> added = new ArrayList<>(changes.added().size());
+        for (PasswordEntry entry : changes.added()) {
+            if (shown.putIfAbsent(entry.getId(), entry) == null) {
+                added.add(entry);
+            }
+        }
+        if (positions != null) {
+            int index = entries.size();
+            for (PasswordEntry entry : added) {
+                positions.put(entry.getId(), index++);
+            }
+        }
+        entries.addAll(added);
+
+        if (selected != null && !shown.containsKey(selected.getId())) {
             selected = null;
         }
     }
 
+    /**
+     * Показывает хранилище, отображённое в память: таблица читает только видимые строки.
+     * Список не копируется, поэтому сортировка по столбцам в этом режиме отключена; результаты поиска
+     * показываются через {@link #setEntries(Collection)} и сортируются как обычно.
+     */
+    public void setMappedEntries(List<PasswordEntry> mappedEntries) {
+        selected = null;
+        shown.clear();
+        entries.clear();
+        positions = null;
+        sortKeys.clear();
+        revealed.clear();
+        tableView.getSortOrder().clear();
+        tableView.getColumns().forEach(column -> column.setSortable(false));
+        tableView.setItems(FXCollections.unmodifiableObservableList(FXCollections.observableList(mappedEntries)));
+    }
+
+    /**
+     * Сортирует строки по ключам, посчитанным заранее: сравнение строк сводится к сравнению байтов
+     * ключей сортировки, а не к вызову фабрик значений ячеек и {@link Collator} на каждое сравнение.
+     */
+    private void sortEntries() {
+        Comparator<SortKey> comparator = null;
+        for (TableColumn<PasswordEntry, ?> column : tableView.getSortOrder()) {
+            Comparator<SortKey> byColumn = sortComparators.get(column);
+            if (byColumn == null) {
+                continue;
+            }
+            if (column.getSortType() == TableColumn.SortType.DESCENDING) {
+                byColumn = byColumn.reversed();
+            }
+            comparator = comparator == null ? byColumn : comparator.thenComparing(byColumn);
+        }
+        if (comparator == null) {
+            return;
+        }
+        // Пары живут только на время сортировки, кэш ключей не держит ссылок на записи
+        List<Map.Entry<SortKey, PasswordEntry>> rows = new ArrayList<>(entries.size());
+        for (PasswordEntry entry : entries) {
+            rows.add(Map.entry(sortKeys.computeIfAbsent(entry.getId(), id -> sortKey(entry)), entry));
+        }
+        rows.sort(Map.Entry.comparingByKey(comparator));
+        List<PasswordEntry> sorted = new ArrayList<>(rows.size());
+        for (Map.Entry<SortKey, PasswordEntry> row : rows) {
+            sorted.add(row.getValue());
+        }
+        positions = null;
+        entries.setAll(sorted);
+    }
+
+    private int positionOf(PasswordEntry entry) {
+        if (positions == null) {
+            positions = new HashMap<>(entries.size() * 2);
+            for (int i = 0; i < entries.size(); i++) {
+                positions.put(entries.get(i).getId(), i);
+            }
+        }
+        return positions.get(entry.getId());
+    }
+
+    private SortKey sortKey(PasswordEntry entry) {
+        return new SortKey(collator.getCollationKey(entry.getService()),
+                collator.getCollationKey(entry.getUsername()), entry.getCreatedAt());
+    }
+
+    private void forget(PasswordEntry entry) {
+        revealed.remove(entry.getId());
+        sortKeys.remove(entry.getId());
+    }
+
+    /**
+     * Отмечает записи, пароль которых повторяется в других записях.
+     */
+    public void setReusedEntries(Set<String> entryIds) {
+        reused = Set.copyOf(entryIds);
+        tableView.refresh();
+    }
+
+    /**
+     * Отмечает записи, пароль которых найден в базе утечек.
+     */
+    public void setBreachedEntries(Set<String> entryIds) {
+        breached = Set.copyOf(entryIds);
+        tableView.refresh();
+    }
+
     public void setGeneratedPassword(String password) {
         passwordField.setText(password);
         visiblePasswordField.setText(password);
@@ -225,6 +521,16 @@ public final class PasswordManagerView {
         passwordStrengthLabel.setStyle("-fx-text-fill: " + strength.getColor() + ";");
     }
 
+    /**
+     * Предупреждает, что введённый пароль найден в утечках; вызывается после {@link #updatePasswordStrength}.
+     */
+    public void updatePasswordBreaches(long count) {
+        if (count > 0) {
+            passwordStrengthLabel.setText("Надежность: найден в утечках (" + count + " раз)");
+            passwordStrengthLabel.setStyle("-fx-text-fill: " + PasswordStrength.VERY_WEAK.getColor() + ";");
+        }
+    }
+
     public void clearForm() {
         selected = null;
         serviceField.clear();
@@ -236,6 +542,27 @@ public final class PasswordManagerView {
         serviceField.requestFocus();
     }
 
+    /**
+     * Показывает индикатор длительной операции; прогресс неизвестен, пока не вызван {@link #updateProgress(double)}.
+     */
+    public void showProgress(String message, boolean cancellable) {
+        progressLabel.setText(message);
+        progressBar.setProgress(ProgressIndicator.INDETERMINATE_PROGRESS);
+        cancelTaskButton.setVisible(cancellable);
+        cancelTaskButton.setManaged(cancellable);
+        progressBox.setVisible(true);
+        progressBox.setManaged(true);
+    }
+
+    public void updateProgress(double fraction) {
+        progressBar.setProgress(fraction);
+    }
+
+    public void hideProgress() {
+        progressBox.setVisible(false);
+        progressBox.setManaged(false);
+    }
+
     public void showError(String message) {
         showAlert(Alert.AlertType.ERROR, "Ошибка", message);
     }
@@ -280,16 +607,30 @@ public final class PasswordManagerView {
         this.onExport = Objects.requireNonNull(handler);
     }
 
+    public void onRotateKey(Runnable handler) {
+        this.onRotateKey = Objects.requireNonNull(handler);
+    }
+
+    public void onCancelTask(Runnable handler) {
+        this.onCancelTask = Objects.requireNonNull(handler);
+    }
+
+    public void onSearch(Consumer<String> handler) {
+        this.onSearch = Objects.requireNonNull(handler);
+    }
+
     private java.util.Optional<Path> chooseFile(boolean open) {
         FileChooser chooser = new FileChooser();
-        // Только JSON файлы
-        FileChooser.ExtensionFilter jsonFilter = new FileChooser.ExtensionFilter("JSON файлы", "*.json");
-        chooser.getExtensionFilters().add(jsonFilter);
-        chooser.setSelectedExtensionFilter(jsonFilter);
+        // Файлы хранилища: JSON или двоичный формат, формат определяется расширением
+        for (VaultFormat format : VaultFormat.values()) {
+            chooser.getExtensionFilters().add(
+                    new FileChooser.ExtensionFilter(format.getDescription(), "*" + format.getExtension()));
+        }
+        chooser.setSelectedExtensionFilter(chooser.getExtensionFilters().get(0));
         
         // Для сохранения устанавливаем имя файла по умолчанию
         if (!open) {
-            chooser.setInitialFileName("vault.json");
+            chooser.setInitialFileName("vault" + VaultFormat.JSON.getExtension());
         }
         
         java.io.File file = open ? chooser.showOpenDialog(tableView.getScene().getWindow())
@@ -297,9 +638,12 @@ public final class PasswordManagerView {
         
         if (file != null) {
             Path path = file.toPath();
-            // При сохранении автоматически добавляем расширение .json если его нет
-            if (!open && !path.getFileName().toString().toLowerCase().endsWith(".json")) {
-                path = path.resolveSibling(path.getFileName().toString() + ".json");
+            // При сохранении автоматически добавляем расширение выбранного формата, если его нет
+            if (!open && VaultFormat.fromPath(path).isEmpty()) {
+                FileChooser.ExtensionFilter selected = chooser.getSelectedExtensionFilter();
+                String extension = selected == null ? VaultFormat.JSON.getExtension()
+                        : selected.getExtensions().get(0).substring(1);
+                path = path.resolveSibling(path.getFileName().toString() + extension);
             }
             return java.util.Optional.of(path);
         }
@@ -310,5 +654,60 @@ public final class PasswordManagerView {
     public interface QuadConsumer<A, B, C, D> {
         void accept(A a, B b, C c, D d);
     }
+
+    /**
+     * Ключи сортировки одной строки таблицы.
+     */
+    private record SortKey(CollationKey service, CollationKey username, LocalDateTime createdAt) {
+    }
+
+    /**
+     * Ячейка пароля: показывает маску, а пароль расшифровывает только по щелчку. Строка запоминается открытой,
+     * и при прокрутке пароль берётся из кэша хранилища без повторной расшифровки, пока кэш его не вытеснил.
+     */
+    private final class PasswordCell extends TableCell<PasswordEntry, PasswordEntry> {
+
+        PasswordCell() {
+            setOnMouseClicked(event -> {
+                PasswordEntry entry = getItem();
+                if (entry == null || isEmpty()) {
+                    return;
+                }
+                if (!revealed.remove(entry.getId())) {
+                    try {
+                        entry.getPassword();
+                        revealed.add(entry.getId());
+                        hideRevealed.playFromStart();
+                    } catch (RuntimeException e) {
+                        showError("Не удалось расшифровать пароль: " + e.getMessage());
+                    }
+                }
+                show(entry);
+            });
+        }
+
+        @Override
+        protected void updateItem(PasswordEntry entry, boolean empty) {
+            super.updateItem(entry, empty);
+            if (empty || entry == null) {
+                setText(null);
+            } else {
+                show(entry);
+            }
+        }
+
+        private void show(PasswordEntry entry) {
+            if (!revealed.contains(entry.getId())) {
+                setText(PASSWORD_MASK);
+                return;
+            }
+            try {
+                setText(entry.getPassword());
+            } catch (RuntimeException e) {
+                revealed.remove(entry.getId());
+                setText(PASSWORD_MASK);
+            }
+        }
+    }
 }
 
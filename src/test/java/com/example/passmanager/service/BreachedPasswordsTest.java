@@ -0,0 +1,165 @@
+package com.example.passmanager.service;
+
+import com.example.passmanager.model.PasswordEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BreachedPasswordsTest {
+
+    private static final int CORPUS_SIZE = 20_000;
+    /**
+     * Пароли из базы и число утечек; база намного больше {@code SCAN_LIMIT}, поэтому поиск идёт интерполяцией.
+     */
+    private static final Map<String, Long> BREACHED = new LinkedHashMap<>();
+
+    static {
+        BREACHED.put("password", 9_545_824L);
+        BREACHED.put("123456", 37_359_195L);
+        BREACHED.put("qwerty", 3_946_737L);
+        BREACHED.put("Password123!", 1_234L);
+        BREACHED.put("пароль", 42L);
+    }
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void findsExactCountsInSortedCrlfCorpus() throws IOException {
+        List<String> lines = corpus(new Random(1), 0);
+        Collections.sort(lines);
+        Path file = write("sorted.txt", lines, "\r\n");
+
+        try (BreachedPasswords breached = BreachedPasswords.open(file)) {
+            for (Map.Entry<String, Long> entry : BREACHED.entrySet()) {
+                assertEquals(entry.getValue(), breached.count(entry.getKey()), entry.getKey());
+            }
+            assertEquals(0, breached.count("kq7#Rv2!mZ9p"));
+            assertEquals(0, breached.count(""));
+            assertEquals(0, breached.count(null));
+        }
+    }
+
+    @Test
+    void scanReportsOnlyBreachedEntries() throws IOException {
+        List<String> lines = corpus(new Random(2), 0);
+        Collections.sort(lines);
+        Path file = write("sorted.txt", lines, "\n");
+
+        List<PasswordEntry> entries = new ArrayList<>();
+        Map<String, Long> expected = new LinkedHashMap<>();
+        int i = 0;
+        for (Map.Entry<String, Long> breachedEntry : BREACHED.entrySet()) {
+            String id = "breached" + i++;
+            entries.add(entry(id, breachedEntry.getKey()));
+            expected.put(id, breachedEntry.getValue());
+        }
+        // Больше порога параллельной обработки: хеши считаются в пуле и сортируются перед поиском
+        for (int j = 0; j < 2 * CryptoPipeline.PARALLEL_THRESHOLD; j++) {
+            entries.add(entry("safe" + j, "safe-password-" + j));
+        }
+        entries.add(null);
+
+        try (BreachedPasswords breached = BreachedPasswords.open(file)) {
+            assertEquals(expected, breached.scan(entries));
+        }
+    }
+
+    @Test
+    void skewedCorpusIsSearchedCorrectly() throws IOException {
+        // Все хеши, кроме искомых, собраны в узком диапазоне: интерполяция промахивается и должна переходить к делению
+        List<String> lines = corpus(new Random(3), 2);
+        Collections.sort(lines);
+        Path file = write("skewed.txt", lines, "\n");
+
+        try (BreachedPasswords breached = BreachedPasswords.open(file)) {
+            for (Map.Entry<String, Long> entry : BREACHED.entrySet()) {
+                assertEquals(entry.getValue(), breached.count(entry.getKey()), entry.getKey());
+            }
+            assertEquals(0, breached.count("kq7#Rv2!mZ9p"));
+        }
+    }
+
+    @Test
+    void unsortedCorpusNeverReportsWrongCount() throws IOException {
+        List<String> lines = corpus(new Random(4), 0);
+        Collections.shuffle(lines, new Random(5));
+        Path file = write("unsorted.txt", lines, "\r\n");
+
+        try (BreachedPasswords breached = BreachedPasswords.open(file)) {
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                for (Map.Entry<String, Long> entry : BREACHED.entrySet()) {
+                    long count = breached.count(entry.getKey());
+                    // В неупорядоченной базе пароль можно не найти, но чужое число утечек — ошибка
+                    assertTrue(count == 0 || count == entry.getValue(), entry.getKey() + ": " + count);
+                }
+                for (int i = 0; i < 1000; i++) {
+                    assertEquals(0, breached.count("not-in-corpus-" + i));
+                }
+            });
+        }
+    }
+
+    @Test
+    void rejectsFileWithoutHashes() throws IOException {
+        Path file = write("notes.txt", List.of("это не база утечек"), "\n");
+        assertThrows(IOException.class, () -> BreachedPasswords.open(file));
+    }
+
+    /**
+     * Случайные хеши и хеши паролей из {@link #BREACHED}.
+     *
+     * @param zeroBytes сколько первых байтов случайных хешей обнулить, чтобы собрать их в узкий диапазон
+     */
+    private static List<String> corpus(Random random, int zeroBytes) {
+        List<String> lines = new ArrayList<>(CORPUS_SIZE + BREACHED.size());
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            byte[] hash = new byte[20];
+            random.nextBytes(hash);
+            Arrays.fill(hash, 0, zeroBytes, (byte) 0);
+            lines.add(HexFormat.of().withUpperCase().formatHex(hash) + ":" + (1 + random.nextInt(100)));
+        }
+        BREACHED.forEach((password, count) -> lines.add(sha1Hex(password) + ":" + count));
+        return lines;
+    }
+
+    private Path write(String name, List<String> lines, String separator) throws IOException {
+        Path file = dir.resolve(name);
+        Files.writeString(file, String.join(separator, lines) + separator, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static PasswordEntry entry(String id, String password) {
+        return new PasswordEntry(id, "service", "user", password, "", LocalDateTime.now());
+    }
+
+    private static String sha1Hex(String password) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(password.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().withUpperCase().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.passmanager.service;
+
+import com.example.passmanager.service.PasswordPolicy.CharacterClass;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PasswordGeneratorTest {
+
+    @Test
+    void everyRequiredClassIsPresentEvenAtMinimalLength() {
+        // Длина равна числу классов: каждый символ пароля должен оказаться из своего класса
+        for (String password : PasswordGenerator.generate(PasswordPolicy.characters(4), 5000)) {
+            assertEquals(4, password.length());
+            for (CharacterClass characterClass : CharacterClass.values()) {
+                assertTrue(password.chars().anyMatch(c -> characterClass.contains((char) c)),
+                        password + " без " + characterClass);
+            }
+        }
+    }
+
+    @Test
+    void ambiguousCharactersAreExcluded() {
+        PasswordPolicy policy = PasswordPolicy.characters(32).withExcludeAmbiguous(true);
+        for (String password : PasswordGenerator.generate(policy, 2000)) {
+            for (char c : PasswordPolicy.AMBIGUOUS.toCharArray()) {
+                assertTrue(password.indexOf(c) < 0, password);
+            }
+        }
+    }
+
+    @Test
+    void customAlphabetIsRespected() {
+        PasswordPolicy policy = PasswordPolicy.characters(12)
+                .withRequired(EnumSet.of(CharacterClass.LOWERCASE, CharacterClass.DIGITS))
+                .withAlphabet("abc123");
+        for (String password : PasswordGenerator.generate(policy, 1000)) {
+            assertTrue(password.matches("[abc123]{12}"), password);
+            assertTrue(password.matches(".*[abc].*") && password.matches(".*[123].*"), password);
+        }
+    }
+
+    @Test
+    void passphraseUsesGivenWords() {
+        List<String> words = List.of("alpha", "bravo", "charlie", "delta");
+        PasswordPolicy policy = PasswordPolicy.passphrase(6).withWords(words).withSeparator(" ");
+        for (String phrase : PasswordGenerator.generate(policy, 500)) {
+            String[] parts = phrase.split(" ");
+            assertEquals(6, parts.length, phrase);
+            assertTrue(words.containsAll(List.of(parts)), phrase);
+        }
+        assertEquals(5, PasswordGenerator.generate(PasswordPolicy.passphrase(5)).split("-").length);
+    }
+
+    @Test
+    void batchPasswordsAreDistinct() {
+        List<String> passwords = PasswordGenerator.generate(PasswordPolicy.characters(16), 10_000);
+        assertEquals(10_000, passwords.size());
+        assertEquals(passwords.size(), new HashSet<>(passwords).size());
+    }
+
+    @Test
+    void unsatisfiablePoliciesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> PasswordGenerator.generate(PasswordPolicy.characters(3)));
+        assertThrows(IllegalArgumentException.class,
+                () -> PasswordGenerator.generate(PasswordPolicy.characters(8).withAlphabet("abcdef")));
+        assertThrows(IllegalArgumentException.class,
+                () -> PasswordGenerator.generate(PasswordPolicy.characters(8).withRequired(Set.of())
+                        .withAlphabet("Il1O0o").withExcludeAmbiguous(true)));
+        assertThrows(IllegalArgumentException.class,
+                () -> PasswordGenerator.generate(PasswordPolicy.characters(8), -1));
+        assertThrows(IllegalArgumentException.class, () -> PasswordPolicy.characters(0));
+    }
+
+    @Test
+    void symbolsAreChosenWithoutModuloBias() {
+        // 256 % 200 = 56: при простом взятии остатка первые 56 символов выпадали бы вдвое чаще остальных
+        int size = 200;
+        StringBuilder alphabet = new StringBuilder(size);
+        for (int i = 0; i < size; i++) {
+            alphabet.append((char) (0x100 + i));
+        }
+        PasswordPolicy policy = PasswordPolicy.characters(1).withRequired(Set.of()).withAlphabet(alphabet.toString());
+        int samples = 200_000;
+        long[] counts = new long[size];
+        for (String password : PasswordGenerator.generate(policy, samples)) {
+            counts[password.charAt(0) - 0x100]++;
+        }
+
+        double head = 0;
+        double tail = 0;
+        for (int i = 0; i < size; i++) {
+            if (i < 256 % size) {
+                head += counts[i];
+            } else {
+                tail += counts[i];
+            }
+        }
+        double ratio = (head / (256 % size)) / (tail / (size - 256 % size));
+        assertTrue(Math.abs(ratio - 1) < 0.05, "перекос " + ratio);
+
+        double expected = (double) samples / size;
+        for (int i = 0; i < size; i++) {
+            assertTrue(Math.abs(counts[i] - expected) < expected * 0.2, "символ " + i + ": " + counts[i]);
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package com.example.passmanager.service;
+
+import com.example.passmanager.model.PasswordEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PasswordRepositoryTest {
+
+    private static final char[] MASTER_PASSWORD = "master".toCharArray();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reuseGroupsSurviveRestartWithoutDecryption() {
+        List<PasswordEntry> entries = new ArrayList<>();
+        PasswordRepository repository = open();
+        for (int i = 0; i < 10; i++) {
+            String password = i % 3 == 0 ? "shared-" + (i % 2) : "unique-" + i;
+            PasswordEntry entry = repository.create("service" + i, "user", password, "");
+            entries.add(entry);
+            repository.recordAdd(entry);
+        }
+        Set<Set<String>> expected = Set.of(
+                Set.of(entries.get(0).getId(), entries.get(6).getId()),
+                Set.of(entries.get(3).getId(), entries.get(9).getId()));
+        assertEquals(expected, groups(repository.findReused(entries)));
+        repository.close();
+
+        PasswordRepository reopened = open();
+        List<PasswordEntry> loaded = reopened.load();
+        assertEquals(10, loaded.size());
+        assertEquals(expected, groups(reopened.findReused(loaded)));
+        // Отпечатки взяты из индекса на диске: ни один пароль не расшифрован
+        assertEquals(0, reopened.plaintextCacheStats().misses());
+        reopened.close();
+    }
+
+    @Test
+    void lostFingerprintIndexIsRebuilt() throws IOException {
+        PasswordRepository repository = open();
+        List<PasswordEntry> entries = List.of(
+                repository.create("a", "user", "same", ""),
+                repository.create("b", "user", "same", ""),
+                repository.create("c", "user", "other", ""));
+        repository.save(entries);
+        repository.close();
+        Files.delete(dir.resolve("fingerprints.idx"));
+
+        PasswordRepository reopened = open();
+        List<PasswordEntry> loaded = reopened.load();
+        assertEquals(Set.of(Set.of(entries.get(0).getId(), entries.get(1).getId())),
+                groups(reopened.findReused(loaded)));
+        assertEquals(3, reopened.plaintextCacheStats().misses());
+        reopened.close();
+    }
+
+    @Test
+    void rotationKeepsEntriesAndBackupsReadable() throws IOException {
+        VaultKey key = unlock();
+        PasswordRepository repository = open(key);
+        Map<String, String> passwords = new LinkedHashMap<>();
+        List<PasswordEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            PasswordEntry entry = repository.create("service" + i, "user", "password-" + i, "");
+            entries.add(entry);
+            passwords.put(entry.getId(), "password-" + i);
+            repository.save(List.copyOf(entries));
+            repository.flush();
+        }
+        PasswordEntry journaled = repository.create("journaled", "user", "in-journal", "");
+        repository.recordAdd(journaled);
+        passwords.put(journaled.getId(), "in-journal");
+        int generation = key.keyRing().current();
+
+        assertTrue(repository.rotateKey());
+        assertFalse(repository.isKeyRotationPending());
+        repository.close();
+
+        KeyRing keyRing = unlock().keyRing();
+        assertNotEquals(generation, keyRing.current());
+        assertEquals(Set.of(keyRing.current()), keyRing.keys().keySet());
+
+        PasswordRepository reopened = open();
+        assertPasswords(passwords, reopened.load());
+        // Резервные снимки перешифрованы: прежнее поколение ключа удалено, но пароли в них читаются
+        Path backup = dir.resolve("vault.json.1");
+        assertTrue(Files.exists(backup));
+        List<PasswordEntry> restored;
+        try (InputStream in = Files.newInputStream(backup)) {
+            restored = reopened.loadFrom(in, VaultFormat.JSON).orElseThrow();
+        }
+        assertFalse(restored.isEmpty());
+        for (PasswordEntry entry : restored) {
+            assertEquals(passwords.get(entry.getId()), entry.getPassword());
+        }
+        reopened.close();
+    }
+
+    @Test
+    void interruptedRotationIsResumed() {
+        PasswordRepository repository = open();
+        Map<String, String> passwords = new LinkedHashMap<>();
+        List<PasswordEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            PasswordEntry entry = repository.create("before" + i, "user", "old-" + i, "");
+            entries.add(entry);
+            passwords.put(entry.getId(), "old-" + i);
+        }
+        repository.save(entries);
+        repository.close();
+
+        // Сбой сразу после записи нового поколения ключа: записи ещё зашифрованы прежним
+        VaultKey key = unlock();
+        assertTrue(key.update(key.keyRing().rotate()));
+        PasswordRepository interrupted = open(key);
+        PasswordEntry added = interrupted.create("after", "user", "new", "");
+        interrupted.recordAdd(added);
+        passwords.put(added.getId(), "new");
+        interrupted.close();
+
+        PasswordRepository resumed = open();
+        assertTrue(resumed.isKeyRotationPending());
+        assertPasswords(passwords, resumed.load());
+        int generation = unlock().keyRing().current();
+
+        assertTrue(resumed.rotateKey());
+        assertFalse(resumed.isKeyRotationPending());
+        resumed.close();
+        // Продолжение не создаёт ещё одного поколения
+        assertEquals(Set.of(generation), unlock().keyRing().keys().keySet());
+        PasswordRepository reopened = open();
+        assertPasswords(passwords, reopened.load());
+        reopened.close();
+    }
+
+    @Test
+    void cancelledRotationIsResumed() throws Exception {
+        PasswordRepository repository = open();
+        Map<String, String> passwords = new HashMap<>();
+        List<PasswordEntry> entries = new ArrayList<>();
+        // Больше одного блока записи: отмена проверяется на границе блоков
+        for (int i = 0; i < 20_000; i++) {
+            PasswordEntry entry = repository.create("service" + i, "user", "password-" + i, "");
+            entries.add(entry);
+            passwords.put(entry.getId(), "password-" + i);
+        }
+        repository.save(entries);
+        repository.flush();
+
+        AtomicReference<CompletableFuture<Boolean>> rotation = new AtomicReference<>();
+        CountDownLatch started = new CountDownLatch(1);
+        rotation.set(repository.rotateKeyAsync((done, total) -> {
+            try {
+                started.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            rotation.get().cancel(false);
+        }));
+        started.countDown();
+        repository.afterQueued().get(30, TimeUnit.SECONDS);
+        assertTrue(rotation.get().isCancelled());
+        assertTrue(repository.isKeyRotationPending());
+        assertPasswords(passwords, repository.load());
+
+        assertTrue(repository.rotateKey());
+        assertFalse(repository.isKeyRotationPending());
+        repository.close();
+        PasswordRepository reopened = open();
+        assertPasswords(passwords, reopened.load());
+        reopened.close();
+    }
+
+    @Test
+    void exportedJsonIsReadBack() {
+        PasswordRepository repository = open();
+        List<PasswordEntry> entries = List.of(
+                repository.create("mail \"work\"", "a\\b", "p\u00e4ss\n\t", "заметка\r\nвторая строка"),
+                repository.create("empty", "", "", ""),
+                repository.create("emoji", "user", "🔑key", "</script>"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(repository.saveTo(out, VaultFormat.JSON, entries));
+
+        List<PasswordEntry> loaded = repository.loadFrom(new ByteArrayInputStream(out.toByteArray()), VaultFormat.JSON)
+                .orElseThrow();
+        assertEquals(entries.size(), loaded.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(entries.get(i).getId(), loaded.get(i).getId());
+            assertEquals(entries.get(i).getService(), loaded.get(i).getService());
+            assertEquals(entries.get(i).getUsername(), loaded.get(i).getUsername());
+            assertEquals(entries.get(i).getPassword(), loaded.get(i).getPassword());
+            assertEquals(entries.get(i).getNotes(), loaded.get(i).getNotes());
+        }
+        repository.close();
+    }
+
+    @Test
+    void journalIsReplayedOverSnapshot() throws IOException {
+        PasswordRepository repository = open();
+        PasswordEntry kept = repository.create("kept", "user", "one", "");
+        PasswordEntry updated = repository.create("updated", "user", "two", "");
+        PasswordEntry deleted = repository.create("deleted", "user", "three", "");
+        repository.save(List.of(kept, updated, deleted));
+        repository.flush();
+        PasswordEntry added = repository.create("added", "user", "four", "");
+        repository.recordAdd(added);
+        repository.recordUpdate(new PasswordEntry(updated.getId(), "updated", "user", "two-changed", "note",
+                updated.getCreatedAt()));
+        repository.recordDelete(deleted.getId());
+        repository.close();
+        assertTrue(Files.size(dir.resolve("vault.journal")) > 0);
+
+        PasswordRepository reopened = open();
+        assertPasswords(Map.of(kept.getId(), "one", updated.getId(), "two-changed", added.getId(), "four"),
+                reopened.load());
+        reopened.close();
+    }
+
+    @Test
+    void journalTruncatedMidRecordKeepsEarlierRecords() throws IOException {
+        PasswordRepository repository = open();
+        Map<String, String> passwords = new LinkedHashMap<>();
+        for (int i = 0; i < 5; i++) {
+            PasswordEntry entry = repository.create("service" + i, "user", "password-" + i, "");
+            repository.recordAdd(entry);
+            passwords.put(entry.getId(), "password-" + i);
+        }
+        PasswordEntry lost = repository.create("lost", "user", "lost", "");
+        repository.recordAdd(lost);
+        repository.close();
+
+        // Сбой посреди дозаписи: от последней записи журнала на диске осталась половина
+        Path journal = dir.resolve("vault.journal");
+        byte[] content = Files.readAllBytes(journal);
+        int lastRecord = new String(content, StandardCharsets.UTF_8).lastIndexOf("\n{") + 1;
+        Files.write(journal, Arrays.copyOf(content, lastRecord + (content.length - lastRecord) / 2));
+
+        PasswordRepository recovered = open();
+        assertPasswords(passwords, recovered.load());
+        // Новые записи не дописываются к оборванной строке: повреждённый журнал уже перенесён в снимок
+        PasswordEntry next = recovered.create("next", "user", "after-recovery", "");
+        recovered.recordAdd(next);
+        passwords.put(next.getId(), "after-recovery");
+        recovered.close();
+
+        PasswordRepository reopened = open();
+        assertPasswords(passwords, reopened.load());
+        reopened.close();
+    }
+
+    @Test
+    void damagedSnapshotFallsBackToPreviousGeneration() throws IOException {
+        PasswordRepository repository = open();
+        PasswordEntry first = repository.create("first", "user", "one", "");
+        repository.save(List.of(first));
+        repository.flush();
+        PasswordEntry second = repository.create("second", "user", "two", "");
+        repository.save(List.of(first, second));
+        repository.flush();
+        repository.close();
+
+        // Снимок повреждён после записи: контрольная сумма не совпадает
+        Path snapshot = dir.resolve("vault.json");
+        byte[] content = Files.readAllBytes(snapshot);
+        Files.write(snapshot, Arrays.copyOf(content, content.length - 10));
+
+        PasswordRepository reopened = open();
+        assertPasswords(Map.of(first.getId(), "one"), reopened.load());
+        reopened.close();
+    }
+
+    @Test
+    void snapshotWithoutChecksumIsTrustedOnlyWithoutChecksumsAtAll() throws IOException {
+        PasswordRepository repository = open();
+        PasswordEntry first = repository.create("first", "user", "one", "");
+        repository.save(List.of(first));
+        repository.flush();
+        PasswordEntry second = repository.create("second", "user", "two", "");
+        repository.save(List.of(first, second));
+        repository.flush();
+        repository.close();
+
+        // Сумма текущего снимка потеряна, а у предыдущего поколения есть: текущему снимку верить нельзя
+        Files.delete(dir.resolve("vault.json.sha256"));
+        PasswordRepository reopened = open();
+        assertPasswords(Map.of(first.getId(), "one"), reopened.load());
+        reopened.close();
+
+        // Сумм нет ни у одного поколения: снимок записан прежней версией
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path checksum : files.filter(path -> path.toString().endsWith(".sha256")).toList()) {
+                Files.delete(checksum);
+            }
+        }
+        PasswordRepository legacy = open();
+        assertPasswords(Map.of(first.getId(), "one", second.getId(), "two"), legacy.load());
+        legacy.close();
+    }
+
+    @Test
+    void importKeepsFirstEntryOfRepeatedId() throws IOException {
+        PasswordRepository repository = open();
+        LocalDateTime now = LocalDateTime.now();
+        List<PasswordEntry> file = new ArrayList<>();
+        file.add(new PasswordEntry("same-chunk", "first", "user", "first", "", now));
+        file.add(new PasswordEntry("same-chunk", "second", "user", "second", "", now));
+        file.add(new PasswordEntry("other-chunk", "first", "user", "first", "", now));
+        // Больше одного блока чтения: повтор попадает в следующий блок
+        for (int i = 0; i < 17_000; i++) {
+            file.add(new PasswordEntry("filler" + i, "filler", "user", "p" + i, "", now));
+        }
+        file.add(new PasswordEntry("other-chunk", "second", "user", "second", "", now));
+        Path source = dir.resolve("import.json");
+        assertTrue(repository.saveTo(source, file));
+
+        List<PasswordEntry> added = new ArrayList<>();
+        assertEquals(17_002, repository.importFrom(source, Set.of(), added::addAll).orElseThrow());
+        assertEquals(17_002, added.size());
+        assertEquals(17_002, added.stream().map(PasswordEntry::getId).distinct().count());
+        repository.close();
+
+        PasswordRepository reopened = open();
+        Map<String, PasswordEntry> loaded = new HashMap<>();
+        reopened.load().forEach(entry -> loaded.put(entry.getId(), entry));
+        assertEquals(17_002, loaded.size());
+        assertEquals("first", loaded.get("same-chunk").getService());
+        assertEquals("first", loaded.get("other-chunk").getPassword());
+        reopened.close();
+    }
+
+    @Test
+    void recordFutureReportsWhetherChangeReachedDisk() throws Exception {
+        PasswordRepository repository = open();
+        repository.setWriteBehind(Duration.ofMillis(50), Duration.ofMillis(100));
+        PasswordEntry saved = repository.create("saved", "user", "one", "");
+        CompletableFuture<Boolean> written = repository.recordAdd(saved);
+        assertTrue(written.get(5, TimeUnit.SECONDS));
+        assertTrue(Files.size(dir.resolve("vault.journal")) > 0);
+        PasswordEntry created = repository.recordAddAsync("created", "user", "three", "").get(5, TimeUnit.SECONDS);
+        assertEquals("three", created.getPassword());
+        repository.close();
+
+        // Журнал нельзя открыть на запись: изменение не записано и отброшено
+        Files.move(dir.resolve("vault.journal"), dir.resolve("journal.bak"));
+        Files.createDirectories(dir.resolve("vault.journal").resolve("blocked"));
+        PasswordRepository failing = open();
+        PasswordEntry lost = failing.create("lost", "user", "two", "");
+        assertFalse(failing.recordAdd(lost).get(5, TimeUnit.SECONDS));
+        assertFalse(failing.recordDeleteAsync(saved.getId()).get(5, TimeUnit.SECONDS));
+        CompletableFuture<PasswordEntry> notCreated = failing.recordAddAsync("lost", "user", "three", "");
+        assertThrows(ExecutionException.class, () -> notCreated.get(5, TimeUnit.SECONDS));
+        assertTrue(failing.flush(), "отброшенные изменения не записываются повторно");
+        failing.close();
+    }
+
+    @Test
+    void closeReportsChangesThatCouldNotBeWritten() throws Exception {
+        // Каталог хранилища нельзя создать: на его месте обычный файл
+        Path blocked = Files.createFile(dir.resolve("blocked"));
+        PasswordRepository repository = new PasswordRepository(blocked.resolve("vault"), VaultFormat.JSON, unlock());
+        repository.setWriteBehind(Duration.ofHours(1), Duration.ofHours(1));
+        PasswordEntry entry = repository.create("service", "user", "one", "");
+        repository.save(List.of(entry));
+        CompletableFuture<Boolean> written = repository.recordUpdate(entry);
+
+        assertFalse(repository.close());
+        assertFalse(written.get(5, TimeUnit.SECONDS));
+    }
+
+    private PasswordRepository open() {
+        return open(unlock());
+    }
+
+    private PasswordRepository open(VaultKey key) {
+        PasswordRepository repository = new PasswordRepository(dir, VaultFormat.JSON, key);
+        repository.setWriteBehind(Duration.ZERO, Duration.ZERO);
+        return repository;
+    }
+
+    private VaultKey unlock() {
+        return VaultKey.status(dir) == VaultKey.Status.MISSING
+                ? VaultKey.create(dir, MASTER_PASSWORD, 1).orElseThrow()
+                : VaultKey.unlock(dir, MASTER_PASSWORD).orElseThrow();
+    }
+
+    /**
+     * Проверяет, что каждая запись найдена и её пароль расшифровывается.
+     */
+    private static void assertPasswords(Map<String, String> expected, List<PasswordEntry> loaded) {
+        assertEquals(expected.size(), loaded.size());
+        for (PasswordEntry entry : loaded) {
+            assertEquals(expected.get(entry.getId()), entry.getPassword(), entry.getId());
+        }
+    }
+
+    private static Set<Set<String>> groups(List<List<String>> groups) {
+        Set<Set<String>> result = new HashSet<>();
+        for (List<String> group : groups) {
+            result.add(Set.copyOf(group));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.passmanager.service;
+
+import com.example.passmanager.model.PasswordEntry;
+import com.example.passmanager.model.PasswordStrength;
+import com.example.passmanager.model.StrengthReport;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PasswordStrengthServiceTest {
+
+    private final PasswordStrengthService service = new PasswordStrengthService();
+    private final EntropyEstimator estimator = new EntropyEstimator();
+
+    @Test
+    void commonPasswordWithDecorationIsNotStrong() {
+        PasswordStrength strength = service.evaluate("Password123!");
+        assertNotEquals(PasswordStrength.VERY_STRONG, strength);
+        assertEquals(PasswordStrength.VERY_WEAK, strength);
+        assertTrue(service.evaluate("p@ssw0rd").compareTo(PasswordStrength.WEAK) <= 0, "замены символов не спасают");
+    }
+
+    @Test
+    void keyboardWalksAreWeak() {
+        for (String walk : List.of("qwertyuiop", "1qaz2wsx3edc", "йцукенгшщз")) {
+            assertTrue(estimator.bits(walk) < 28, walk + ": " + estimator.bits(walk));
+        }
+    }
+
+    @Test
+    void repeatsAndSequencesAreWeak() {
+        for (String pattern : List.of("aaaaaaaaaaaa", "abcabcabcabc", "abcdefghijkl", "9876543210")) {
+            assertTrue(estimator.bits(pattern) < 28, pattern + ": " + estimator.bits(pattern));
+        }
+        // Тот же набор символов без шаблона стоит заметно больше
+        assertTrue(estimator.bits("xkqvzjwpmtrb") > 2 * estimator.bits("abcdefghijkl"));
+    }
+
+    @Test
+    void randomAndLongPasswordsAreStrong() {
+        assertEquals(PasswordStrength.STRONG, service.evaluate("kq7#Rv2!mZ9p"));
+        assertEquals(PasswordStrength.VERY_STRONG, service.evaluate("G7$kP2!vQ9#mX4&z"));
+        assertEquals(PasswordStrength.VERY_STRONG, service.evaluate("correct horse battery staple"));
+    }
+
+    @Test
+    void levelsFollowEntropy() {
+        assertEquals(PasswordStrength.VERY_WEAK, service.evaluate(""));
+        assertEquals(0, service.entropy(null));
+
+        List<String> passwords = List.of("password", "Password123!", "xkqvzjwpmtrb", "Tr0ub4dor&3",
+                "kq7#Rv2!mZ9p", "G7$kP2!vQ9#mX4&z", "correct horse battery staple");
+        for (String a : passwords) {
+            for (String b : passwords) {
+                if (service.entropy(a) < service.entropy(b)) {
+                    assertTrue(service.evaluate(a).compareTo(service.evaluate(b)) <= 0, a + " / " + b);
+                }
+            }
+        }
+    }
+
+    @Test
+    void estimateFitsKeystrokeBudget() {
+        String typed = "correct horse battery staple Tr0ub4dor&3 qwerty";
+        String[] inputs = new String[typed.length()];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = typed.substring(0, i + 1);
+        }
+        double sink = 0;
+        for (int i = 0; i < 50_000; i++) {
+            sink += estimator.bits(inputs[i % inputs.length]);
+        }
+        int runs = 20_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            sink += estimator.bits(inputs[i % inputs.length]);
+        }
+        double micros = (System.nanoTime() - start) / 1000.0 / runs;
+        assertTrue(sink > 0);
+        assertTrue(micros < 50, "в среднем " + micros + " мкс на оценку");
+    }
+
+    @Test
+    void auditCountsEveryEntryAndListsWeakestFirst() {
+        List<PasswordEntry> entries = new ArrayList<>();
+        String[] passwords = {"password", "kq7#Rv2!mZ9p", "G7$kP2!vQ9#mX4&z", "qwertyuiop"};
+        for (int i = 0; i < 3000; i++) {
+            entries.add(new PasswordEntry("id" + i, "service" + i, "user", passwords[i % passwords.length], "",
+                    LocalDateTime.now()));
+        }
+        StrengthReport report = service.audit(entries, 5);
+
+        assertEquals(3000, report.total());
+        assertEquals(1500, report.count(PasswordStrength.VERY_WEAK));
+        assertEquals(750, report.count(PasswordStrength.STRONG));
+        assertEquals(750, report.count(PasswordStrength.VERY_STRONG));
+        assertEquals(5, report.weakest().size());
+        for (int i = 1; i < report.weakest().size(); i++) {
+            assertTrue(report.weakest().get(i - 1).entropy() <= report.weakest().get(i).entropy());
+        }
+        assertEquals(PasswordStrength.VERY_WEAK, report.weakest().get(4).strength());
+    }
+}
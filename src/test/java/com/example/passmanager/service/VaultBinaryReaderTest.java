@@ -0,0 +1,69 @@
+package com.example.passmanager.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VaultBinaryReaderTest {
+
+    @Test
+    void readsWrittenRecordsLargerThanInitialBuffer() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        VaultBinaryWriter writer = new VaultBinaryWriter(bytes);
+        writer.writeHeader(2, false);
+        writer.writeEntry("1", "mail", "user", "x".repeat(100_000), 42, new byte[]{1, 2, 3});
+        writer.writeEntry("2", "bank", "", "", 0, new byte[0]);
+        writer.flush();
+
+        try (VaultBinaryReader reader = new VaultBinaryReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(2, reader.readHeader());
+            assertTrue(reader.next());
+            assertEquals(100_000, reader.record().notes().length());
+            assertEquals(42, reader.record().createdAtMillis());
+            assertTrue(reader.next());
+            assertEquals("bank", reader.record().service());
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void oversizedRecordLengthIsRejected() throws IOException {
+        for (int length : new int[]{Integer.MAX_VALUE, VaultBinaryReader.MAX_RECORD_SIZE + 1, -1}) {
+            try (VaultBinaryReader reader = new VaultBinaryReader(new ByteArrayInputStream(record(length, 16)))) {
+                assertThrows(IOException.class, reader::next, String.valueOf(length));
+            }
+        }
+    }
+
+    @Test
+    void lengthBeyondEndOfFileIsRejected() throws IOException {
+        // Длина в пределах нормы, но данных в файле почти нет: запись отвергается как оборванная
+        byte[] file = record(VaultBinaryReader.MAX_RECORD_SIZE, 16);
+        try (VaultBinaryReader reader = new VaultBinaryReader(new ByteArrayInputStream(file))) {
+            assertThrows(IOException.class, reader::next);
+        }
+    }
+
+    /**
+     * Заголовок на одну запись и её префикс длины, за которым идут {@code body} нулевых байтов.
+     */
+    private static byte[] record(int length, int body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(VaultBinaryWriter.MAGIC);
+        out.writeShort(VaultBinaryWriter.VERSION);
+        out.writeShort(0);
+        out.writeInt(1);
+        out.writeInt(length);
+        out.write(new byte[body]);
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.passmanager.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VaultJsonReaderTest {
+
+    @Test
+    void readsEntriesAndUnescapesStrings() throws IOException {
+        String json = """
+                [
+                  {"id": "1", "service": "mail \\"work\\"", "username": "a\\\\b", "password": "p\\u0041ss",
+                   "notes": "line1\\nline2\\ttab", "createdAt": "2024-01-02T03:04:05"},
+                  {"id": "2", "service": "пример", "username": "", "password": "x", "notes": "", "createdAt": ""}
+                ]
+                """;
+        try (VaultJsonReader reader = new VaultJsonReader(new StringReader(json))) {
+            assertTrue(reader.next());
+            assertEquals("1", reader.id());
+            assertEquals("mail \"work\"", reader.service());
+            assertEquals("a\\b", reader.username());
+            assertEquals("pAss", reader.password());
+            assertEquals("line1\nline2\ttab", reader.notes());
+            assertEquals("2024-01-02T03:04:05", reader.createdAt());
+
+            assertTrue(reader.next());
+            assertEquals("2", reader.id());
+            assertEquals("пример", reader.service());
+            assertFalse(reader.next());
+            assertFalse(reader.truncated());
+        }
+    }
+
+    @Test
+    void skipsUnknownFieldsOfAnyType() throws IOException {
+        String json = "[{\"id\":\"1\",\"version\":3,\"tags\":[\"a\",{\"b\":\"}\"}],\"meta\":{\"x\":[1,2]},"
+                + "\"flag\":true,\"password\":\"secret\"},{\"id\":\"2\",\"extra\":null}]";
+        try (VaultJsonReader reader = new VaultJsonReader(new StringReader(json))) {
+            assertTrue(reader.next());
+            assertEquals("1", reader.id());
+            assertEquals("secret", reader.password());
+            assertTrue(reader.next());
+            assertEquals("2", reader.id());
+            assertEquals("", reader.password());
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void valuesSpanningBufferRefillsAreReadWhole() throws IOException {
+        String notes = "x".repeat(40_000) + "\\\"" + "y".repeat(20_000);
+        String json = "[{\"id\":\"1\",\"notes\":\"" + notes + "\"},{\"id\":\"2\"}]";
+        // Поток отдаёт по нескольку символов: экранирование и границы токенов попадают на стык буферов
+        try (VaultJsonReader reader = new VaultJsonReader(new Trickle(new StringReader(json)))) {
+            assertTrue(reader.next());
+            assertEquals(60_001, reader.notes().length());
+            assertEquals('"', reader.notes().charAt(40_000));
+            assertTrue(reader.next());
+            assertEquals("2", reader.id());
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void emptyOrMissingArrayHasNoEntries() throws IOException {
+        for (String json : new String[]{"[]", "  [ ]  ", ""}) {
+            try (VaultJsonReader reader = new VaultJsonReader(new StringReader(json))) {
+                assertFalse(reader.next(), json);
+                assertFalse(reader.truncated(), json);
+            }
+        }
+    }
+
+    @Test
+    void truncatedFileKeepsCompleteEntries() throws IOException {
+        String json = "[{\"id\":\"1\",\"password\":\"a\"},{\"id\":\"2\",\"password\":\"b\"},{\"id\":\"3\",\"pass";
+        try (VaultJsonReader reader = new VaultJsonReader(new StringReader(json))) {
+            assertTrue(reader.next());
+            assertTrue(reader.next());
+            assertEquals("2", reader.id());
+            assertFalse(reader.next());
+            assertTrue(reader.truncated());
+        }
+        // Обрыв посреди escape-последовательности
+        try (VaultJsonReader reader = new VaultJsonReader(new StringReader("[{\"id\":\"1\",\"notes\":\"a\\u00"))) {
+            assertFalse(reader.next());
+            assertTrue(reader.truncated());
+        }
+    }
+
+    @Test
+    void journalRecordsAreReadWithoutArray() throws IOException {
+        String records = "{\"op\":\"add\",\"id\":\"1\",\"password\":\"a\"}\n{\"op\":\"delete\",\"id\":\"1\"}\n"
+                + "{\"op\":\"add\",\"id\":\"2\",\"pass";
+        try (VaultJsonReader reader = VaultJsonReader.forRecords(new StringReader(records))) {
+            assertTrue(reader.next());
+            assertEquals("add", reader.op());
+            assertTrue(reader.next());
+            assertEquals("delete", reader.op());
+            assertEquals("1", reader.id());
+            assertFalse(reader.next());
+            assertTrue(reader.truncated());
+        }
+    }
+
+    /**
+     * Отдаёт не больше нескольких символов за вызов, как медленный поток.
+     */
+    private static final class Trickle extends FilterReader {
+
+        Trickle(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return super.read(buffer, offset, Math.min(length, 7));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.passmanager.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VaultKeyTest {
+
+    /**
+     * Тестам не нужна стойкость к перебору: одна итерация делает вывод ключа мгновенным.
+     */
+    private static final int ITERATIONS = 1;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void createdKeyUnlocksWithSamePassword() {
+        assertEquals(VaultKey.Status.MISSING, VaultKey.status(dir));
+        VaultKey created = VaultKey.create(dir, "master".toCharArray(), ITERATIONS).orElseThrow();
+        assertEquals(VaultKey.Status.PROTECTED, VaultKey.status(dir));
+        String encrypted = new EncryptionService(created).encrypt("secret");
+
+        VaultKey unlocked = VaultKey.unlock(dir, "master".toCharArray()).orElseThrow();
+        assertEquals("secret", new EncryptionService(unlocked).decrypt(encrypted));
+        assertArrayEquals(created.keyRing().encode(), unlocked.keyRing().encode());
+    }
+
+    @Test
+    void wrongPasswordIsRejected() {
+        VaultKey.create(dir, "master".toCharArray(), ITERATIONS).orElseThrow();
+        assertTrue(VaultKey.unlock(dir, "Master".toCharArray()).isEmpty());
+        assertTrue(VaultKey.unlock(dir, new char[0]).isEmpty());
+    }
+
+    @Test
+    void damagedKeyFileIsRejected() throws IOException {
+        VaultKey.create(dir, "master".toCharArray(), ITERATIONS).orElseThrow();
+        Path file = dir.resolve(VaultKey.FILE_NAME);
+        byte[] content = Files.readAllBytes(file);
+        content[content.length - 1] ^= 1;
+        Files.write(file, content);
+        assertTrue(VaultKey.unlock(dir, "master".toCharArray()).isEmpty());
+
+        Files.write(file, Arrays.copyOf(content, content.length / 2));
+        assertTrue(VaultKey.unlock(dir, "master".toCharArray()).isEmpty());
+    }
+
+    @Test
+    void changedPasswordKeepsEntriesReadable() {
+        VaultKey key = VaultKey.create(dir, "old".toCharArray(), ITERATIONS).orElseThrow();
+        String encrypted = new EncryptionService(key).encrypt("secret");
+        assertTrue(key.changePassword("new".toCharArray(), 2));
+
+        assertTrue(VaultKey.unlock(dir, "old".toCharArray()).isEmpty());
+        VaultKey unlocked = VaultKey.unlock(dir, "new".toCharArray()).orElseThrow();
+        assertEquals("secret", new EncryptionService(unlocked).decrypt(encrypted));
+    }
+
+    @Test
+    void unprotectedKeyIsKeptWhenProtected() throws IOException {
+        byte[] legacy = new byte[32];
+        Arrays.fill(legacy, (byte) 7);
+        Files.write(dir.resolve(VaultKey.FILE_NAME), legacy);
+        assertEquals(VaultKey.Status.UNPROTECTED, VaultKey.status(dir));
+
+        VaultKey key = VaultKey.create(dir, "master".toCharArray(), ITERATIONS).orElseThrow();
+        assertEquals(VaultKey.Status.PROTECTED, VaultKey.status(dir));
+        assertArrayEquals(legacy, key.keyRing().currentKey().getEncoded());
+        assertArrayEquals(legacy,
+                VaultKey.unlock(dir, "master".toCharArray()).orElseThrow().keyRing().currentKey().getEncoded());
+    }
+
+    @Test
+    void rotatedKeyRingRoundTrips() {
+        VaultKey key = VaultKey.create(dir, "master".toCharArray(), ITERATIONS).orElseThrow();
+        KeyRing rotated = key.keyRing().rotate();
+        assertTrue(key.update(rotated));
+        assertTrue(rotated.isRotating());
+
+        KeyRing reopened = VaultKey.unlock(dir, "master".toCharArray()).orElseThrow().keyRing();
+        assertEquals(rotated.current(), reopened.current());
+        assertEquals(rotated.keys().keySet(), reopened.keys().keySet());
+        assertArrayEquals(rotated.encode(), reopened.encode());
+        assertFalse(reopened.retire().isRotating());
+    }
+
+    @Test
+    void calibrationNeverGoesBelowMinimum() {
+        assertEquals(VaultKey.MIN_ITERATIONS, VaultKey.calibrate(Duration.ofNanos(1)));
+        assertTrue(VaultKey.calibrate(Duration.ofMillis(50)) >= VaultKey.MIN_ITERATIONS);
+    }
+}